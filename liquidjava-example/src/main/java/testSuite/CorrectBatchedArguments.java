@@ -0,0 +1,19 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class CorrectBatchedArguments {
+    public static int area(@Refinement("w * h > 0") int w, @Refinement("h * w > 0") int h,
+            @Refinement("d * w * h > 0") int d) {
+        return w * h * d;
+    }
+
+    public static void main(String[] args) {
+        @Refinement("x > 2")
+        int x = 3;
+        @Refinement("y > 1")
+        int y = 2;
+        area(x, y, x);
+    }
+}
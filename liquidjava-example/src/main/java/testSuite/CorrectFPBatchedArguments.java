@@ -0,0 +1,16 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class CorrectFPBatchedArguments {
+    public static double f(@Refinement("a + 0.2 != 0.3") double a, @Refinement("b + 0.2 != 0.3") double b) {
+        return a + b;
+    }
+
+    public static void main(String[] args) {
+        @Refinement("x == 0.1")
+        double x = 0.1;
+        f(x, x);
+    }
+}
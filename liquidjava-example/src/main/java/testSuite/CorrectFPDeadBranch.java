@@ -0,0 +1,17 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class CorrectFPDeadBranch {
+    public static void main(String[] args) {
+        @Refinement("_ > 0")
+        int a = 5;
+
+        // the branch is dead, which only the premises on a show, and those do not share a variable with y
+        if (a < 0) {
+            @Refinement("_ > 1.0")
+            double y = 0.5;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class CorrectFPRounding {
+    public static void main(String[] args) {
+        @Refinement("x == 0.1")
+        double x = 0.1;
+
+        // 0.1 + 0.2 rounds to 0.30000000000000004, which reals do not see
+        @Refinement("_ != 0.3")
+        double y = x + 0.2;
+    }
+}
@@ -0,0 +1,16 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class CorrectStringEquality {
+    public static void open(@Refinement("mode != \"w\"") String mode) {
+    }
+
+    public static void read(@Refinement("mode == \"r\" || mode == \"rb\"") String mode) {
+        open(mode);
+    }
+
+    public static void main(String[] args) {
+    }
+}
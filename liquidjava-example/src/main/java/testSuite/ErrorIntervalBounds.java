@@ -0,0 +1,17 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class ErrorIntervalBounds {
+    public static void main(String[] args) {
+        @Refinement("a >= 0 && a < 10")
+        int a = 0;
+
+        @Refinement("b >= 1 && b <= 10")
+        int b = a + 1;
+
+        @Refinement("c > 0")
+        int c = b - 1; // should emit error
+    }
+}
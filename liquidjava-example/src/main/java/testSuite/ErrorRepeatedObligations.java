@@ -0,0 +1,17 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class ErrorRepeatedObligations {
+    public static void main(String[] args) {
+        @Refinement("a > 0")
+        int a = 5;
+
+        @Refinement("b > 0")
+        int b = 5;
+
+        @Refinement("c > 0")
+        int c = a - b; // should emit error
+    }
+}
@@ -0,0 +1,16 @@
+package testSuite;
+
+import liquidjava.specification.Refinement;
+
+@SuppressWarnings("unused")
+public class ErrorStringEquality {
+    public static void open(@Refinement("mode != \"w\"") String mode) {
+    }
+
+    public static void write(@Refinement("mode == \"w\" || mode == \"wb\"") String mode) {
+        open(mode); // should emit error
+    }
+
+    public static void main(String[] args) {
+    }
+}
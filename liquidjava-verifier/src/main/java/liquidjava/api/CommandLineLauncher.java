@@ -4,6 +4,9 @@ import java.io.File;
 
 import liquidjava.errors.ErrorEmitter;
 import liquidjava.processor.RefinementProcessor;
+import liquidjava.smt.SolverWarmUp;
+import liquidjava.smt.VerificationOptions;
+import liquidjava.smt.VerificationSession;
 import spoon.Launcher;
 import spoon.processing.ProcessingManager;
 import spoon.reflect.declaration.CtPackage;
@@ -19,8 +22,13 @@ public class CommandLineLauncher {
         // In VSCode needs:
         // "../liquidjava/liquidjava-umbrella/liquidjava-example/src/main/java/liquidjava/test/project";
         String file = args.length == 0 ? allPath : args[0];
-        ErrorEmitter ee = launch(file);
-        System.out.println(ee.foundError() ? (ee.getFullMessage()) : ("Correct! Passed Verification."));
+        try (VerificationSession session = VerificationSession.open(VerificationOptions.fromSystemProperties())) {
+            ErrorEmitter ee = launch(file, session);
+            System.out.println(ee.foundError() ? (ee.getFullMessage()) : ("Correct! Passed Verification."));
+            for (String w : ee.getWarnings())
+                System.out.println("Warning: " + w);
+            System.out.println(session.getReport());
+        }
     }
 
     public static ErrorEmitter launchTest(String file) {
@@ -29,6 +37,12 @@ public class CommandLineLauncher {
     }
 
     public static ErrorEmitter launch(String file) {
+        try (VerificationSession session = VerificationSession.open(VerificationOptions.fromSystemProperties())) {
+            return launch(file, session);
+        }
+    }
+
+    public static ErrorEmitter launch(String file, VerificationSession session) {
         System.out.println("Running LiquidJava on: " + file);
         Launcher launcher = new Launcher();
         launcher.addInputResource(file);
@@ -43,7 +57,14 @@ public class CommandLineLauncher {
         // "lib1.jar:lib2.jar".split(":"));
         launcher.getEnvironment().setComplianceLevel(8);
 
+        // the solver gets ready while the model is built
+        SolverWarmUp warmUp = session.getWarmUp();
+        if (session.getOptions().isWarmUp())
+            warmUp.start();
+        long start = System.nanoTime();
         launcher.run();
+        warmUp.recordModelBuild(System.nanoTime() - start);
+        warmUp.await();
 
         final Factory factory = launcher.getFactory();
         final ProcessingManager processingManager = new QueueProcessingManager(factory);
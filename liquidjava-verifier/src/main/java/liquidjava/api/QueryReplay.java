@@ -0,0 +1,134 @@
+package liquidjava.api;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import liquidjava.smt.BackendSolver;
+import liquidjava.smt.QueryDump;
+import liquidjava.smt.SolverBackend;
+import liquidjava.smt.VerificationOptions;
+import liquidjava.smt.VerificationSession;
+
+/**
+ * Runs again the queries written with {@code -Dliquidjava.smt.dump.dir}, printing for each one the time z3 takes now
+ * next to the time and verdict recorded when it was dumped. The queries are checked on the backend selected with
+ * {@code -Dliquidjava.smt.solver.command}, so that backends can be compared on the same queries.
+ *
+ * <p>
+ * Usage: {@code QueryReplay <dump directory> [timeout in milliseconds]}
+ */
+public class QueryReplay {
+
+    private static final String USAGE = "Usage: QueryReplay <dump directory> [timeout in milliseconds]";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length > 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        int timeout = 0;
+        if (args.length > 1) {
+            try {
+                timeout = Integer.parseInt(args[1].trim());
+            } catch (NumberFormatException e) {
+                timeout = -1;
+            }
+            if (timeout < 0) {
+                System.err.println("Invalid timeout: " + args[1]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+        run(Path.of(args[0]), timeout, System.out);
+    }
+
+    /**
+     * Replays the queries of a dump directory, printing the table of their times and verdicts
+     *
+     * @param dir
+     * @param timeout
+     *            time limit of each query in milliseconds, 0 for none
+     * @param out
+     *
+     * @return the number of queries whose verdict changed
+     *
+     * @throws IOException
+     */
+    public static int run(Path dir, int timeout, PrintStream out) throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.toString().endsWith(".smt2")).sorted().collect(Collectors.toList());
+        }
+
+        double recordedTotal = 0;
+        double replayedTotal = 0;
+        int changed = 0;
+        out.println(String.format("%-32s %-8s %-8s %12s %12s  %s", "query", "dumped", "replayed", "dumped-ms",
+                "replayed-ms", "source"));
+        SolverBackend backend = VerificationSession
+                .openBackend(VerificationOptions.fromSystemProperties().getSolverCommand());
+        for (Path f : files) {
+            String smt = new String(Files.readAllBytes(f), StandardCharsets.UTF_8);
+            String recordedStatus = header(smt, QueryDump.STATUS, "?");
+            double recordedTime = Double.parseDouble(header(smt, QueryDump.TIME, "0"));
+            Replayed r = replay(backend, smt, timeout);
+            String status = r.status;
+            double time = r.nanos / 1e6;
+            recordedTotal += recordedTime;
+            replayedTotal += time;
+            boolean differs = !status.equals(recordedStatus);
+            if (differs)
+                changed++;
+            out.println(String.format("%-32s %-8s %-8s %12.3f %12.3f  %s%s", f.getFileName(), recordedStatus, status,
+                    recordedTime, time, header(smt, QueryDump.SOURCE, "unknown"),
+                    differs ? "  (verdict changed)" : ""));
+        }
+        out.println(String.format("%d queries, %.3f ms when dumped, %.3f ms replayed, %d verdicts changed",
+                files.size(), recordedTotal, replayedTotal, changed));
+        String report = backend.report();
+        if (report != null)
+            out.println(report);
+        backend.close();
+        return changed;
+    }
+
+    private static class Replayed {
+        final String status;
+        final long nanos;
+
+        Replayed(String status, long nanos) {
+            this.status = status;
+            this.nanos = nanos;
+        }
+    }
+
+    /** Checks the query on a fresh context, timing only the check as when the query was dumped */
+    private static Replayed replay(SolverBackend backend, String smt, int timeout) {
+        try (Context z3 = new Context(); BackendSolver s = backend.mkSolver(z3)) {
+            s.setLimits(timeout, 0);
+            BoolExpr[] assertions = z3.parseSMTLIB2String(smt, null, null, null, null);
+            for (BoolExpr a : assertions)
+                s.add(a);
+            long start = System.nanoTime();
+            String status = QueryDump.smtStatus(s.check());
+            return new Replayed(status, System.nanoTime() - start);
+        }
+    }
+
+    private static String header(String smt, String prefix, String defaultValue) {
+        for (String line : smt.split("\n")) {
+            if (!line.startsWith(";"))
+                break;
+            if (line.startsWith(prefix))
+                return line.substring(prefix.length()).trim();
+        }
+        return defaultValue;
+    }
+}
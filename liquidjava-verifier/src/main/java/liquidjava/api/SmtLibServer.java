@@ -0,0 +1,48 @@
+package liquidjava.api;
+
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Global;
+import com.microsoft.z3.Native;
+import com.microsoft.z3.Z3Exception;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import liquidjava.smt.SmtLibReader;
+
+/**
+ * A solver process for {@code -Dliquidjava.smt.solver.command}: reads SMT-LIB2 commands from its standard input and
+ * answers them on its standard output with the z3 of the Java bindings, in the same way as {@code z3 -in -smt2}. It can
+ * stand in for a solver executable where none is installed, and runs the solver in a JVM with its own memory limits.
+ *
+ * <p>
+ * Usage: {@code java -Xmx1g -cp <classpath> liquidjava.api.SmtLibServer}
+ */
+public class SmtLibServer {
+
+    private static final String PRODUCE_UNSAT_CORES = "(set-option :produce-unsat-cores true)";
+
+    public static void main(String[] args) throws IOException {
+        SmtLibReader reader = new SmtLibReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        // the embedded solver rejects this option as a command once it exists, so it is always on
+        Global.setParameter("unsat_core", "true");
+        try (Context z3 = new Context()) {
+            String command;
+            while ((command = reader.next()) != null && !command.equals("(exit)")) {
+                if (command.equals(PRODUCE_UNSAT_CORES))
+                    continue;
+                String answer;
+                try {
+                    answer = Native.evalSmtlib2String(z3.nCtx(), command);
+                } catch (Z3Exception e) {
+                    // the message is already an SMT-LIB2 error, which stays set in the context until it is cleared
+                    answer = e.getMessage().trim() + "\n";
+                    Native.setError(z3.nCtx(), 0);
+                }
+                out.print(answer);
+                out.flush();
+            }
+        }
+    }
+}
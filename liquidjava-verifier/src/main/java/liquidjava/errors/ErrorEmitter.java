@@ -1,7 +1,9 @@
 package liquidjava.errors;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import liquidjava.processor.context.PlacementInCode;
 import spoon.reflect.cu.SourcePosition;
 
@@ -13,6 +15,7 @@ public class ErrorEmitter {
     private ErrorPosition position;
     private int errorStatus;
     private HashMap<String, PlacementInCode> map;
+    private List<String> warnings = new ArrayList<>();
 
     public ErrorEmitter() {
     }
@@ -55,6 +58,25 @@ public class ErrorEmitter {
         this.errorStatus = errorStatus;
     }
 
+    /**
+     * Adds a warning, which does not make the verification fail. Unlike errors, all the warnings are kept
+     *
+     * @param titleMessage
+     * @param msg
+     * @param p
+     */
+    public void addWarning(String titleMessage, String msg, SourcePosition p) {
+        warnings.add(titleMessage + "\n" + msg + (p == null ? "" : "\nLocation: " + p));
+    }
+
+    public boolean foundWarning() {
+        return !warnings.isEmpty();
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
     public boolean foundError() {
         return fullMessage != null && position != null;
     }
@@ -76,6 +98,7 @@ public class ErrorEmitter {
         position = null;
         errorStatus = 0;
         map = null;
+        warnings.clear();
     }
 
     public ErrorPosition getPosition() {
@@ -7,6 +7,7 @@ import liquidjava.processor.VCImplication;
 import liquidjava.processor.context.PlacementInCode;
 import liquidjava.rj_language.Predicate;
 import spoon.reflect.code.CtLiteral;
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtElement;
 
 public class ErrorHandler {
@@ -186,6 +187,14 @@ public class ErrorHandler {
         errorl.addError(s, sb.toString(), element.getPosition(), 1);
     }
 
+    public static void printUnknownResult(String msg, SourcePosition p, ErrorEmitter errorl) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("______________________________________________________\n");
+        sb.append("Could not verify refinement, the solver gave up: " + msg + "\n");
+        sb.append("______________________________________________________\n");
+        errorl.addWarning("Unknown verification result", sb.toString(), p);
+    }
+
     public static void printSyntaxError(String msg, String ref, CtElement element, ErrorEmitter errorl) {
         StringBuilder sb = new StringBuilder();
         sb.append("______________________________________________________\n");
@@ -52,11 +52,11 @@ public class AliasWrapper {
     }
 
     public Expression getNewExpression(List<String> newNames) {
-        Predicate expr = getClonedPredicate();
+        Map<String, String> map = new HashMap<>();
         for (int i = 0; i < newNames.size(); i++) {
-            expr = expr.substituteVariable(varNames.get(i), newNames.get(i));
+            map.put(varNames.get(i), newNames.get(i));
         }
-        return expr.getExpression().clone();
+        return expression.substituteVariables(map).getExpression();
     }
 
     public Predicate getPremises(List<String> list, List<String> newNames, CtElement elem, ErrorEmitter ee)
@@ -94,6 +94,45 @@ public class Context {
         return ret;
     }
 
+    /**
+     * Type that {@link #getContext()} gives to the variable, found without building the whole map
+     *
+     * @param name
+     *
+     * @return the type, or null if there is no variable with that name
+     */
+    public CtTypeReference<?> getVariableType(String name) {
+        RefinedVariable v = findLast(ctxGlobalVars, name, false);
+        if (v == null)
+            v = findLast(ctxSpecificVars, name, false);
+        for (int i = ctxVars.size() - 1; v == null && i >= 0; i--)
+            v = findLast(ctxVars.get(i), name, false);
+        return v == null ? null : v.getType();
+    }
+
+    /**
+     * Variable that {@link #getAllVariablesWithSupertypes()} lists last with the given name
+     *
+     * @param name
+     *
+     * @return the variable, or null if there is no variable with that name and supertypes
+     */
+    public RefinedVariable getVariableWithSupertypes(String name) {
+        RefinedVariable v = findLast(ctxSpecificVars, name, true);
+        for (int i = ctxVars.size() - 1; v == null && i >= 0; i--)
+            v = findLast(ctxVars.get(i), name, true);
+        return v;
+    }
+
+    private static RefinedVariable findLast(List<RefinedVariable> l, String name, boolean withSupertypes) {
+        for (int i = l.size() - 1; i >= 0; i--) {
+            RefinedVariable v = l.get(i);
+            if (v.getName().equals(name) && (!withSupertypes || !v.getSuperTypes().isEmpty()))
+                return v;
+        }
+        return null;
+    }
+
     // ---------------------- Global variables ----------------------
     public void addGlobalVariableToContext(String simpleName, CtTypeReference<?> type, Predicate c) {
         RefinedVariable vi = new Variable(simpleName, type, c);
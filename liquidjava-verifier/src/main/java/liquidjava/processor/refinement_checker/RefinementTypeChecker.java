@@ -2,7 +2,9 @@ package liquidjava.processor.refinement_checker;
 
 import java.lang.annotation.Annotation;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import liquidjava.errors.ErrorEmitter;
 import liquidjava.processor.context.*;
@@ -97,8 +99,11 @@ public class RefinementTypeChecker extends TypeChecker {
         }
 
         context.enterContext();
+        String previousMethod = vcChecker.getMethod();
+        vcChecker.setMethod(c.getSignature());
         mfc.loadFunctionInfo(c);
         super.visitCtConstructor(c);
+        vcChecker.setMethod(previousMethod);
         context.exitContext();
     }
 
@@ -108,10 +113,13 @@ public class RefinementTypeChecker extends TypeChecker {
         }
 
         context.enterContext();
+        String previousMethod = vcChecker.getMethod();
+        vcChecker.setMethod(method.getDeclaringType().getQualifiedName() + "." + method.getSignature());
         if (!method.getSignature().equals("main(java.lang.String[])")) {
             mfc.loadFunctionInfo(method);
         }
         super.visitCtMethod(method);
+        vcChecker.setMethod(previousMethod);
         context.exitContext();
     }
 
@@ -555,16 +563,15 @@ public class RefinementTypeChecker extends TypeChecker {
     }
 
     private Predicate substituteAllVariablesForLastInstance(Predicate c) {
-        Predicate ret = c;
-        List<String> ls = c.getVariableNames();
-        for (String s : ls) {
+        Map<String, String> map = new HashMap<>();
+        for (String s : c.getVariableNames()) {
             Optional<VariableInstance> rv = context.getLastVariableInstance(s);
             if (rv.isPresent()) {
                 VariableInstance vi = rv.get();
-                ret = ret.substituteVariable(s, vi.getName());
+                map.put(s, vi.getName());
             }
         }
-        return ret;
+        return c.substituteVariables(map);
     }
 
     // ############################### Get Metadata
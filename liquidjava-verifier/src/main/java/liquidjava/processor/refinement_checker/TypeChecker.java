@@ -294,6 +294,13 @@ public abstract class TypeChecker extends CtScanner {
         element.putMetadata(REFINE_KEY, expectedType);
     }
 
+    /** Checks the obligations of the arguments of a call together */
+    public void checkSMT(List<Predicate> expectedTypes, CtElement element) {
+        vcChecker.processSubtypings(expectedTypes, context.getGhostState(), WILD_VAR, THIS, element, factory);
+        if (!expectedTypes.isEmpty())
+            element.putMetadata(REFINE_KEY, expectedTypes.get(expectedTypes.size() - 1));
+    }
+
     public void checkStateSMT(Predicate prevState, Predicate expectedState, CtElement target, String string) {
         vcChecker.processSubtyping(prevState, expectedState, context.getGhostState(), WILD_VAR, THIS, target, string,
                 factory);
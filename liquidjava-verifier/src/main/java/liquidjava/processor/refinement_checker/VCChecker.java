@@ -1,6 +1,8 @@
 package liquidjava.processor.refinement_checker;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Stack;
@@ -16,6 +18,8 @@ import liquidjava.smt.NotFoundError;
 import liquidjava.smt.SMTEvaluator;
 import liquidjava.smt.TypeCheckError;
 import liquidjava.smt.TypeMismatchError;
+import liquidjava.smt.UnknownResultError;
+import liquidjava.smt.VerificationSession;
 import spoon.reflect.code.CtInvocation;
 import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtElement;
@@ -25,6 +29,7 @@ public class VCChecker {
     private final Context context;
     private final List<RefinedVariable> pathVariables;
     private final ErrorEmitter errorEmitter;
+    private final SMTEvaluator smtEvaluator;
     Pattern thisPattern = Pattern.compile("#this_\\d+");
     Pattern instancePattern = Pattern.compile("^#(.+)_[0-9]+$");
 
@@ -32,6 +37,7 @@ public class VCChecker {
         context = Context.getInstance();
         pathVariables = new Stack<>();
         this.errorEmitter = errorEmitter;
+        smtEvaluator = new SMTEvaluator(VerificationSession.current());
     }
 
     public void processSubtyping(Predicate expectedType, List<GhostState> list, String wild_var, String this_var,
@@ -57,11 +63,72 @@ public class VCChecker {
         }
 
         try {
-            smtChecking(premises, et);
+            smtChecking(premises, et, element.getPosition());
         } catch (Exception e) {
+            printSMTError(e, premisesBeforeChange, expectedType, element, map);
+        }
+    }
+
+    /**
+     * Checks the obligations of the arguments of a call together, reporting the ones that do not hold in the same way
+     * and order as {@link #processSubtyping(Predicate, List, String, String, CtElement, Factory)} does one by one
+     */
+    public void processSubtypings(List<Predicate> expectedTypes, List<GhostState> list, String wild_var,
+            String this_var, CtElement element, Factory f) {
+        if (!VerificationSession.current().getOptions().isBatch()) {
+            for (Predicate expectedType : expectedTypes)
+                processSubtyping(expectedType, list, wild_var, this_var, element, f);
+            return;
+        }
+        int n = expectedTypes.size();
+        List<HashMap<String, PlacementInCode>> maps = new ArrayList<>();
+        Predicate[] premisesBeforeChange = new Predicate[n];
+        Predicate[] premises = new Predicate[n];
+        String[] changeErrors = new String[n];
+        List<Predicate> subRefs = new ArrayList<>(), supRefs = new ArrayList<>();
+        int[] checked = new int[n];
+        Arrays.fill(checked, -1);
+        String[] s = { wild_var, this_var };
+        for (int i = 0; i < n; i++) {
+            Predicate expectedType = expectedTypes.get(i);
+            List<RefinedVariable> lrv = new ArrayList<>(), mainVars = new ArrayList<>();
+            gatherVariables(expectedType, lrv, mainVars);
+            HashMap<String, PlacementInCode> map = new HashMap<>();
+            maps.add(map);
+            if (expectedType.isBooleanTrue())
+                continue;
+
+            premisesBeforeChange[i] = joinPredicates(expectedType, mainVars, lrv, map).toConjunctions();
+            premises[i] = new Predicate();
+            try {
+                premises[i] = premisesBeforeChange[i].changeStatesToRefinements(list, s, errorEmitter)
+                        .changeAliasToRefinement(context, f);
+                Predicate et = expectedType.changeStatesToRefinements(list, s, errorEmitter)
+                        .changeAliasToRefinement(context, f);
+                checked[i] = subRefs.size();
+                subRefs.add(premises[i]);
+                supRefs.add(et);
+            } catch (Exception e1) {
+                changeErrors[i] = e1.getMessage();
+            }
+        }
+
+        Exception[] errors = smtEvaluator.verifySubtypes(subRefs, supRefs, context, element.getPosition());
+        for (int i = 0; i < n; i++) {
+            if (changeErrors[i] != null)
+                printError(premises[i], expectedTypes.get(i), element, maps.get(i), changeErrors[i]);
+            else if (checked[i] >= 0 && errors[checked[i]] != null)
+                printSMTError(errors[checked[i]], premisesBeforeChange[i], expectedTypes.get(i), element, maps.get(i));
+        }
+    }
+
+    private void printSMTError(Exception e, Predicate premisesBeforeChange, Predicate expectedType, CtElement element,
+            HashMap<String, PlacementInCode> map) {
+        if (e instanceof UnknownResultError)
+            ErrorHandler.printUnknownResult(e.getMessage(), element.getPosition(), errorEmitter);
+        else
             // To emit the message we use the constraints before the alias and state change
             printError(e, premisesBeforeChange, expectedType, element, map);
-        }
     }
 
     public void processSubtyping(Predicate type, Predicate expectedType, List<GhostState> list, String wild_var,
@@ -186,7 +253,7 @@ public class VCChecker {
         return allVars;
     }
 
-    private void getVariablesFromContext(List<String> lvars, List<RefinedVariable> allVars, String notAdd) {
+    private void getVariablesFromContext(Collection<String> lvars, List<RefinedVariable> allVars, String notAdd) {
         lvars.stream().filter(name -> !name.equals(notAdd) && context.hasVariable(name)).map(context::getVariableByName)
                 .filter(rv -> !allVars.contains(rv)).forEach(rv -> {
                     allVars.add(rv);
@@ -199,15 +266,16 @@ public class VCChecker {
             return;
         Predicate c = var.getRefinement();
         String varName = var.getName();
-        List<String> l = c.getVariableNames();
-        getVariablesFromContext(l, newVars, varName);
+        getVariablesFromContext(c.getVariableNames(), newVars, varName);
     }
 
     public boolean smtChecks(Predicate cSMT, Predicate expectedType, SourcePosition p) {
         try {
-            new SMTEvaluator().verifySubtype(cSMT, expectedType, context);
+            smtEvaluator.verifySubtype(cSMT, expectedType, context, p);
         } catch (TypeCheckError e) {
             return false;
+        } catch (UnknownResultError e) {
+            ErrorHandler.printUnknownResult(e.getMessage(), p, errorEmitter);
         } catch (Exception e) {
             // System.err.println("Unknown error:"+e.getMessage());
             // e.printStackTrace();
@@ -224,14 +292,15 @@ public class VCChecker {
      *
      * @param cSMT
      * @param expectedType
+     * @param p
      *
      * @throws Exception
      * @throws GhostFunctionError
      * @throws TypeCheckError
      */
-    private void smtChecking(Predicate cSMT, Predicate expectedType)
+    private void smtChecking(Predicate cSMT, Predicate expectedType, SourcePosition p)
             throws TypeCheckError, GhostFunctionError, Exception {
-        new SMTEvaluator().verifySubtype(cSMT, expectedType, context);
+        smtEvaluator.verifySubtype(cSMT, expectedType, context, p);
     }
 
     /**
@@ -244,8 +313,16 @@ public class VCChecker {
      */
     @SuppressWarnings("unused")
     private Predicate substituteByMap(Predicate c, HashMap<String, String> map) {
-        map.keySet().forEach(s -> c.substituteVariable(s, map.get(s)));
-        return c;
+        return c.substituteVariables(map);
+    }
+
+    /** Method whose obligations are checked from now on */
+    public void setMethod(String method) {
+        smtEvaluator.setMethod(method);
+    }
+
+    public String getMethod() {
+        return smtEvaluator.getMethod();
     }
 
     public void addPathVariable(RefinedVariable rv) {
@@ -298,10 +298,7 @@ public class MethodsFunctionsChecker {
 
         if (methodRef != null) {
             boolean equalsThis = methodRef.toString().equals("(_ == this)"); // TODO change for better
-            List<String> vars = methodRef.getVariableNames();
-            for (String s : vars)
-                if (map.containsKey(s))
-                    methodRef = methodRef.substituteVariable(s, map.get(s));
+            methodRef = methodRef.substituteVariables(map);
 
             String varName = null;
             if (invocation.getMetadata(rtc.TARGET_KEY) != null) {
@@ -364,16 +361,13 @@ public class MethodsFunctionsChecker {
             Map<String, String> map) {
         List<CtExpression<?>> invocationParams = arguments;
         List<Variable> functionParams = f.getArguments();
+        List<Predicate> expectedTypes = new ArrayList<>();
         for (int i = 0; i < invocationParams.size(); i++) {
             Variable fArg = functionParams.get(i);
-            Predicate c = fArg.getMainRefinement();
-            c = c.substituteVariable(fArg.getName(), map.get(fArg.getName()));
-            List<String> vars = c.getVariableNames();
-            for (String s : vars)
-                if (map.containsKey(s))
-                    c = c.substituteVariable(s, map.get(s));
-            rtc.checkSMT(c, invocation);
+            Predicate c = fArg.getMainRefinement().substituteVariables(map);
+            expectedTypes.add(c);
         }
+        rtc.checkSMT(expectedTypes, invocation);
     }
 
     // IN CONSTRUCTION _ NOT USED
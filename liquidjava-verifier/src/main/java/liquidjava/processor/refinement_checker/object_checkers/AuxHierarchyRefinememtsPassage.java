@@ -102,10 +102,8 @@ public class AuxHierarchyRefinememtsPassage {
             // functionRef)
             functionRef = functionRef.substituteVariable(tc.WILD_VAR, name);
             superRef = superRef.substituteVariable(tc.WILD_VAR, name);
-            for (String m : super2function.keySet())
-                superRef = superRef.substituteVariable(m, super2function.get(m));
-            for (String m : super2function.keySet())
-                functionRef = functionRef.substituteVariable(m, super2function.get(m));
+            superRef = superRef.substituteVariables(super2function);
+            functionRef = functionRef.substituteVariables(super2function);
 
             tc.checkStateSMT(functionRef, superRef, method,
                     "Return Refinement of Subclass must be subtype of the Return Refinement of the" + " Superclass");
@@ -251,10 +251,7 @@ public class AuxStateHandler {
         List<Predicate> oc = f.getToStates();
         if (oc.size() > 0) { // && !oc.get(0).isBooleanTrue())
             // ctConstructorCall.putMetadata(stateKey, oc.get(0));
-            Predicate c = oc.get(0);
-            for (String k : map.keySet()) {
-                c = c.substituteVariable(k, map.get(k));
-            }
+            Predicate c = oc.get(0).substituteVariables(map);
             ctConstructorCall.putMetadata(refKey, c);
             // add maping to oc.get(0)-HERE
         } else if (oc.size() > 1) {
@@ -426,21 +423,16 @@ public class AuxStateHandler {
             }
             // replace "state(this)" to "state(whatever method is called from) and so on"
             Predicate expectState = stateChange.getFrom().substituteVariable(tc.THIS, instanceName);
-            Predicate prevCheck = prevState;
-            for (String s : map.keySet()) { // substituting function variables into annotation if there are any
-                prevCheck = prevCheck.substituteVariable(s, map.get(s));
-                expectState = expectState.substituteVariable(s, map.get(s));
-            }
+            // substituting function variables into annotation if there are any
+            Predicate prevCheck = prevState.substituteVariables(map);
+            expectState = expectState.substituteVariables(map);
             expectState = expectState.changeOldMentions(vi.getName(), instanceName, tc.getErrorEmitter());
 
             found = tc.checksStateSMT(prevCheck, expectState, invocation.getPosition());
             if (found && stateChange.hasTo()) {
                 String newInstanceName = String.format(tc.instanceFormat, name, tc.getContext().getCounter());
                 Predicate transitionedState = stateChange.getTo().substituteVariable(tc.WILD_VAR, newInstanceName)
-                        .substituteVariable(tc.THIS, newInstanceName);
-                for (String s : map.keySet()) {
-                    transitionedState = transitionedState.substituteVariable(s, map.get(s));
-                }
+                        .substituteVariable(tc.THIS, newInstanceName).substituteVariables(map);
                 transitionedState = checkOldMentions(transitionedState, instanceName, newInstanceName, tc);
                 // update of stata of new instance of this#n#(whatever it was + 1)
                 addInstanceWithState(tc, name, newInstanceName, vi, transitionedState, invocation);
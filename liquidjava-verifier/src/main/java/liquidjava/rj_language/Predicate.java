@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 import liquidjava.errors.ErrorEmitter;
 import liquidjava.errors.ErrorHandler;
 import liquidjava.processor.context.AliasWrapper;
@@ -99,26 +99,37 @@ public class Predicate {
     }
 
     public Predicate substituteVariable(String from, String to) {
-        Expression ec = exp.clone();
-        ec = ec.substitute(new Var(from), new Var(to));
-        return new Predicate(ec);
+        return new Predicate(exp.substitute(new Var(from), new Var(to)));
     }
 
-    public List<String> getVariableNames() {
-        List<String> l = new ArrayList<>();
-        exp.getVariableNames(l);
-        return l;
+    /**
+     * Renames the variables of the map simultaneously, in one traversal of the expression
+     *
+     * @param map
+     *            new name of each variable
+     *
+     * @return
+     */
+    public Predicate substituteVariables(Map<String, String> map) {
+        Map<String, Expression> vars = new HashMap<>();
+        for (Map.Entry<String, String> e : map.entrySet())
+            vars.put(e.getKey(), new Var(e.getValue()).intern());
+        return new Predicate(exp.substituteVariables(vars));
+    }
+
+    /** Names of the variables of the predicate, cached by its expression */
+    public Set<String> getVariableNames() {
+        return exp.getVariableNames();
     }
 
     public List<GhostState> getStateInvocations(List<GhostState> lgs) {
         if (lgs == null)
             return new ArrayList<>();
-        List<String> all = lgs.stream().map(p -> p.getName()).collect(Collectors.toList());
-        List<String> toAdd = new ArrayList<>();
-        exp.getStateInvocations(toAdd, all);
-
+        Set<String> invoked = exp.getFunctionNames();
         List<GhostState> gh = new ArrayList<>();
-        for (String n : toAdd) {
+        if (invoked.isEmpty())
+            return gh;
+        for (String n : invoked) {
             for (GhostState g : lgs)
                 if (g.getName().equals(n))
                     gh.add(g);
@@ -129,12 +140,10 @@ public class Predicate {
 
     /** Change old mentions of previous name to the new name e.g., old(previousName) -> newName */
     public Predicate changeOldMentions(String previousName, String newName, ErrorEmitter ee) {
-        Expression e = exp.clone();
         Expression prev = createVar(previousName).getExpression();
         List<Expression> le = new ArrayList<>();
         le.add(createVar(newName).getExpression());
-        e.substituteFunction(Utils.OLD, le, prev);
-        return new Predicate(e);
+        return new Predicate(exp.substituteFunction(Utils.OLD, le, prev));
     }
 
     public List<String> getOldVariableNames() {
@@ -174,6 +183,27 @@ public class Predicate {
         return exp.isBooleanTrue();
     }
 
+    /**
+     * Splits the predicate in its top-level conjuncts, looking inside groups and leaving out the literal true
+     *
+     * @return list of the conjuncts in the order they appear in the predicate
+     */
+    public List<Expression> getConjuncts() {
+        List<Expression> l = new ArrayList<>();
+        auxGetConjuncts(exp, l);
+        return l;
+    }
+
+    private void auxGetConjuncts(Expression e, List<Expression> l) {
+        if (e instanceof GroupExpression)
+            auxGetConjuncts(((GroupExpression) e).getExpression(), l);
+        else if (e instanceof BinaryExpression && ((BinaryExpression) e).getOperator().equals(Utils.AND)) {
+            auxGetConjuncts(((BinaryExpression) e).getFirstOperand(), l);
+            auxGetConjuncts(((BinaryExpression) e).getSecondOperand(), l);
+        } else if (!(e instanceof LiteralBoolean && e.isBooleanTrue()))
+            l.add(e);
+    }
+
     @Override
     public String toString() {
         return exp.toString();
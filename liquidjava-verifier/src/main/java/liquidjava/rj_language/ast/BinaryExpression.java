@@ -1,21 +1,19 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class BinaryExpression extends Expression {
 
-    private String op;
+    private final String op;
 
     public BinaryExpression(Expression e1, String op, Expression e2) {
+        super(e1, e2);
         this.op = op;
-        addChild(e1);
-        addChild(e2);
     }
 
     public Expression getFirstOperand() {
-        return children.get(0);
+        return children[0];
     }
 
     public String getOperator() {
@@ -23,7 +21,7 @@ public class BinaryExpression extends Expression {
     }
 
     public Expression getSecondOperand() {
-        return children.get(1);
+        return children[1];
     }
 
     public boolean isLogicOperation() {
@@ -40,7 +38,7 @@ public class BinaryExpression extends Expression {
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+    public Expr<?> translate(TranslatorToZ3 ctx) throws Exception {
         Expr<?> ee1 = getFirstOperand().eval(ctx);
         Expr<?> ee2 = getSecondOperand().eval(ctx);
         return evalBinaryOp(ctx, ee1, ee2);
@@ -86,23 +84,6 @@ public class BinaryExpression extends Expression {
         return getFirstOperand().toString() + " " + op + " " + getSecondOperand().toString();
     }
 
-    @Override
-    public void getVariableNames(List<String> toAdd) {
-        getFirstOperand().getVariableNames(toAdd);
-        getSecondOperand().getVariableNames(toAdd);
-    }
-
-    @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
-        getFirstOperand().getStateInvocations(toAdd, all);
-        getSecondOperand().getStateInvocations(toAdd, all);
-    }
-
-    @Override
-    public Expression clone() {
-        return new BinaryExpression(getFirstOperand().clone(), op, getSecondOperand().clone());
-    }
-
     @Override
     public boolean isBooleanTrue() {
         switch (op) {
@@ -120,39 +101,17 @@ public class BinaryExpression extends Expression {
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((getFirstOperand() == null) ? 0 : getFirstOperand().hashCode());
-        result = prime * result + ((getSecondOperand() == null) ? 0 : getSecondOperand().hashCode());
-        result = prime * result + ((op == null) ? 0 : op.hashCode());
-        return result;
+    protected Expression withChildren(Expression[] children) {
+        return new BinaryExpression(children[0], op, children[1]);
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        BinaryExpression other = (BinaryExpression) obj;
-        if (getFirstOperand() == null) {
-            if (other.getFirstOperand() != null)
-                return false;
-        } else if (!getFirstOperand().equals(other.getFirstOperand()))
-            return false;
-        if (getSecondOperand() == null) {
-            if (other.getSecondOperand() != null)
-                return false;
-        } else if (!getSecondOperand().equals(other.getSecondOperand()))
-            return false;
-        if (op == null) {
-            if (other.op != null)
-                return false;
-        } else if (!op.equals(other.op))
-            return false;
-        return true;
+    protected int nodeHashCode() {
+        return op.hashCode();
+    }
+
+    @Override
+    protected boolean nodeEquals(Expression other) {
+        return op.equals(((BinaryExpression) other).op);
     }
 }
@@ -1,49 +1,198 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import liquidjava.processor.context.Context;
 import liquidjava.processor.facade.AliasDTO;
 import liquidjava.rj_language.ast.typing.TypeInfer;
 import liquidjava.smt.TranslatorToZ3;
 import spoon.reflect.factory.Factory;
 
+/**
+ * Expression of the refinements language. Expressions are immutable: a rewrite builds again the nodes on the path to
+ * its changes and shares the rest of the tree with the original expression. Hash codes are computed once, and the
+ * interned expressions, such as the parsed refinements, are compared by reference.
+ */
 public abstract class Expression {
 
-    public abstract Expr<?> eval(TranslatorToZ3 ctx) throws Exception;
-
-    public abstract void getVariableNames(List<String> toAdd);
+    /** Translates the expression to z3, reusing the translation of an equal expression met before by ctx */
+    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+        return ctx.eval(this);
+    }
 
-    public abstract void getStateInvocations(List<String> toAdd, List<String> all);
+    /** Translates this node to z3, its children through {@link #eval(TranslatorToZ3)} */
+    public abstract Expr<?> translate(TranslatorToZ3 ctx) throws Exception;
 
     public abstract boolean isBooleanTrue();
 
-    public abstract int hashCode();
-
-    public abstract boolean equals(Object obj);
-
-    public abstract Expression clone();
-
     public abstract String toString();
 
-    List<Expression> children = new ArrayList<>();
+    // the representatives of the interned expressions, kept while they are in use elsewhere
+    private static final Map<Expression, WeakReference<Expression>> interned = new WeakHashMap<>();
+
+    final Expression[] children;
+    private int hash;
+    // whether this is the representative of the expressions equal to it
+    private boolean canonical;
+    // computed on first use, shared with the nodes built from this one
+    private volatile Set<String> variableNames;
+    private volatile Set<String> functionNames;
 
-    public void addChild(Expression e) {
-        children.add(e);
+    protected Expression(Expression... children) {
+        this.children = children;
     }
 
     public List<Expression> getChildren() {
-        return children;
+        return Collections.unmodifiableList(Arrays.asList(children));
     }
 
     public boolean hasChildren() {
-        return children.size() > 0;
+        return children.length > 0;
     }
 
-    public void setChild(int index, Expression element) {
-        children.set(index, element);
+    /**
+     * Names of the variables of the expression, in the order they first appear. Computed once per node, and shared with
+     * the subexpressions that hold all of them, so rewritten expressions only compute the nodes they rebuild.
+     *
+     * @return an immutable set
+     */
+    public Set<String> getVariableNames() {
+        Set<String> names = variableNames;
+        if (names == null) {
+            names = this instanceof Var ? Set.of(((Var) this).getName())
+                    : unionOfChildren(Collections.emptySet(), Expression::getVariableNames);
+            variableNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * Names of the functions invoked in the expression, such as the ghosts and states, in the order they first appear.
+     * Computed once per node, like {@link #getVariableNames()}.
+     *
+     * @return an immutable set
+     */
+    public Set<String> getFunctionNames() {
+        Set<String> names = functionNames;
+        if (names == null) {
+            names = unionOfChildren(this instanceof FunctionInvocation ? Set.of(((FunctionInvocation) this).getName())
+                    : Collections.emptySet(), Expression::getFunctionNames);
+            functionNames = names;
+        }
+        return names;
+    }
+
+    private Set<String> unionOfChildren(Set<String> own, Function<Expression, Set<String>> names) {
+        Set<String> result = own;
+        Set<String> merged = null;
+        for (Expression child : children) {
+            if (child == null)
+                continue;
+            Set<String> s = names.apply(child);
+            if (s.isEmpty() || s == result)
+                continue;
+            if (result.isEmpty()) {
+                result = s;
+            } else if (merged == null) {
+                if (result.containsAll(s))
+                    continue;
+                merged = new LinkedHashSet<>(result);
+                merged.addAll(s);
+            } else {
+                merged.addAll(s);
+            }
+        }
+        return merged == null ? result : Collections.unmodifiableSet(merged);
+    }
+
+    /** The same node with other children */
+    protected abstract Expression withChildren(Expression[] children);
+
+    /** Hash code of the node without its children */
+    protected abstract int nodeHashCode();
+
+    /** Whether the node, of the same class as this one, is equal to it without looking at the children */
+    protected abstract boolean nodeEquals(Expression other);
+
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * nodeHashCode() + Arrays.hashCode(children);
+            // 0 means not computed yet
+            hash = h == 0 ? 1 : h;
+        }
+        return hash;
+    }
+
+    @Override
+    public final boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        Expression other = (Expression) obj;
+        if (canonical && other.canonical)
+            // there is a single representative of each expression
+            return false;
+        return hashCode() == other.hashCode() && nodeEquals(other) && Arrays.equals(children, other.children);
+    }
+
+    /** Expressions are immutable, so they are shared instead of copied */
+    @Override
+    public final Expression clone() {
+        return this;
+    }
+
+    /**
+     * The representative of the expressions equal to this one, whose subexpressions are representatives as well. Equal
+     * representatives are the same instance, so they are compared by reference.
+     *
+     * @return
+     */
+    public Expression intern() {
+        if (canonical)
+            return this;
+        Expression e = mapChildren(Expression::intern);
+        synchronized (interned) {
+            WeakReference<Expression> ref = interned.get(e);
+            Expression found = ref == null ? null : ref.get();
+            if (found != null)
+                return found;
+            e.canonical = true;
+            interned.put(e, new WeakReference<>(e));
+            return e;
+        }
+    }
+
+    /**
+     * The expression with each child replaced by the result of f on it
+     *
+     * @param f
+     *
+     * @return this expression if f returns every child unchanged
+     */
+    public Expression mapChildren(UnaryOperator<Expression> f) {
+        Expression[] updated = null;
+        for (int i = 0; i < children.length; i++) {
+            Expression child = children[i];
+            Expression next = child == null ? null : f.apply(child);
+            if (next != child) {
+                if (updated == null)
+                    updated = children.clone();
+                updated[i] = next;
+            }
+        }
+        return updated == null ? this : withChildren(updated);
     }
 
     /**
@@ -55,22 +204,41 @@ public abstract class Expression {
      * @return
      */
     public Expression substitute(Expression from, Expression to) {
-        Expression e = clone();
         if (this.equals(from))
-            e = to;
-        e.auxSubstitute(from, to);
-        return e;
-    }
-
-    private void auxSubstitute(Expression from, Expression to) {
-        if (hasChildren()) {
-            for (int i = 0; i < children.size(); i++) {
-                Expression exp = children.get(i);
-                if (exp.equals(from))
-                    setChild(i, to);
-                exp.auxSubstitute(from, to);
-            }
+            return to;
+        return auxSubstitute(from.intern(), to.intern());
+    }
+
+    private Expression auxSubstitute(Expression from, Expression to) {
+        // the subexpressions without the variable stay as they are
+        if (from instanceof Var && !getVariableNames().contains(((Var) from).getName()))
+            return this;
+        return mapChildren(exp -> exp.equals(from) ? to : exp.auxSubstitute(from, to));
+    }
+
+    /**
+     * Substitutes the variables named in the map by their expressions, all in one traversal. The substitution is
+     * simultaneous: the variables of a replacement are not substituted again, even if the map names them.
+     *
+     * @param map
+     *            expression of each variable name
+     *
+     * @return this expression if it mentions none of the variables
+     */
+    public Expression substituteVariables(Map<String, ? extends Expression> map) {
+        if (map.isEmpty())
+            return this;
+        return auxSubstituteVariables(map);
+    }
+
+    private Expression auxSubstituteVariables(Map<String, ? extends Expression> map) {
+        if (this instanceof Var) {
+            Expression to = map.get(((Var) this).getName());
+            return to == null ? this : to;
         }
+        if (Collections.disjoint(getVariableNames(), map.keySet()))
+            return this;
+        return mapChildren(exp -> exp.auxSubstituteVariables(map));
     }
 
     /**
@@ -78,74 +246,71 @@ public abstract class Expression {
      *
      * @param s
      * @param e
+     *
+     * @return
      */
-    public void substituteFunction(String functionName, List<Expression> parameters, Expression sub) {
-        if (hasChildren())
-            for (int i = 0; i < children.size(); i++) {
-                Expression exp = children.get(i);
-                if (exp instanceof FunctionInvocation) {
-                    FunctionInvocation fi = (FunctionInvocation) exp;
-                    if (fi.name.equals(functionName) && fi.argumentsEqual(parameters)) {
-                        // substitute by sub in parent
-                        setChild(i, sub);
-                    }
-                }
-                exp.substituteFunction(functionName, parameters, sub);
+    public Expression substituteFunction(String functionName, List<Expression> parameters, Expression sub) {
+        return auxSubstituteFunction(functionName, parameters, sub.intern());
+    }
+
+    private Expression auxSubstituteFunction(String functionName, List<Expression> parameters, Expression sub) {
+        return mapChildren(exp -> {
+            if (exp instanceof FunctionInvocation) {
+                FunctionInvocation fi = (FunctionInvocation) exp;
+                if (fi.name.equals(functionName) && fi.argumentsEqual(parameters))
+                    // substitute by sub in parent
+                    return sub;
             }
+            return exp.auxSubstituteFunction(functionName, parameters, sub);
+        });
     }
 
     public Expression substituteState(Map<String, Expression> subMap, String[] toChange) {
-        Expression e = clone();
-        if (this instanceof FunctionInvocation) {
-            FunctionInvocation fi = (FunctionInvocation) this;
-            if (subMap.containsKey(fi.name) && fi.children.size() == 1 && fi.children.get(0) instanceof Var) { // object
-                // state
-                Var v = (Var) fi.children.get(0);
-                Expression sub = subMap.get(fi.name).clone();
-                for (String s : toChange) {
-                    sub = sub.substitute(new Var(s), v);
-                }
-                // substitute by sub in parent
-                e = new GroupExpression(sub);
-            }
-        }
-        e.auxSubstituteState(subMap, toChange);
-        return e;
-    }
-
-    private void auxSubstituteState(Map<String, Expression> subMap, String[] toChange) {
-        if (hasChildren()) {
-            for (int i = 0; i < children.size(); i++) {
-                Expression exp = children.get(i);
-                if (exp instanceof FunctionInvocation) {
-                    FunctionInvocation fi = (FunctionInvocation) exp;
-                    if (subMap.containsKey(fi.name) && fi.children.size() == 1 && fi.children.get(0) instanceof Var) { // object
-                        // state
-                        Var v = (Var) fi.children.get(0);
-                        Expression sub = subMap.get(fi.name).clone();
-                        for (String s : toChange) {
-                            sub = sub.substitute(new Var(s), v);
-                        }
-                        // substitute by sub in parent
-                        setChild(i, (sub instanceof GroupExpression) ? sub : new GroupExpression(sub));
-                    }
-                }
-                exp.auxSubstituteState(subMap, toChange);
-            }
+        Expression e = this;
+        Expression sub = getStateRefinement(this, subMap, toChange);
+        if (sub != null)
+            // substitute by sub in parent
+            e = new GroupExpression(sub);
+        return e.auxSubstituteState(subMap, toChange);
+    }
+
+    private Expression auxSubstituteState(Map<String, Expression> subMap, String[] toChange) {
+        return mapChildren(exp -> {
+            Expression sub = getStateRefinement(exp, subMap, toChange);
+            if (sub == null)
+                return exp.auxSubstituteState(subMap, toChange);
+            // substitute by sub in parent
+            return (sub instanceof GroupExpression) ? sub : new GroupExpression(sub);
+        });
+    }
+
+    /** The refinement of the object state invoked by e, or null if e is not the invocation of a state of subMap */
+    private static Expression getStateRefinement(Expression e, Map<String, Expression> subMap, String[] toChange) {
+        if (!(e instanceof FunctionInvocation))
+            return null;
+        FunctionInvocation fi = (FunctionInvocation) e;
+        if (!subMap.containsKey(fi.name) || fi.children.length != 1 || !(fi.children[0] instanceof Var))
+            return null;
+        // object state
+        Var v = (Var) fi.children[0];
+        Expression sub = subMap.get(fi.name);
+        for (String s : toChange) {
+            sub = sub.substitute(new Var(s), v);
         }
+        return sub;
     }
 
     public Expression changeAlias(Map<String, AliasDTO> alias, Context ctx, Factory f) throws Exception {
-        Expression e = clone();
+        Expression e = this;
         if (this instanceof AliasInvocation) {
             AliasInvocation ai = (AliasInvocation) this;
             if (alias.containsKey(ai.name)) { // object state
                 AliasDTO dto = alias.get(ai.name);
-                Expression sub = dto.getExpression().clone();
-                for (int i = 0; i < children.size(); i++) {
+                Expression sub = dto.getExpression();
+                for (int i = 0; i < children.length; i++) {
                     Expression varExp = new Var(dto.getVarNames().get(i));
                     String varType = dto.getVarTypes().get(i);
-                    Expression aliasExp = children.get(i);
+                    Expression aliasExp = children[i];
 
                     boolean checks = TypeInfer.checkCompatibleType(varType, aliasExp, ctx, f);
                     if (!checks)
@@ -158,37 +323,44 @@ public abstract class Expression {
                 e = new GroupExpression(sub);
             }
         }
-        e.auxChangeAlias(alias, ctx, f);
-        return e;
-    }
-
-    private void auxChangeAlias(Map<String, AliasDTO> alias, Context ctx, Factory f) throws Exception {
-        if (hasChildren())
-            for (int i = 0; i < children.size(); i++) {
-                if (children.get(i) instanceof AliasInvocation) {
-                    AliasInvocation ai = (AliasInvocation) children.get(i);
-                    if (!alias.containsKey(ai.name))
-                        throw new Exception("Alias '" + ai.getName() + "' not found");
-                    AliasDTO dto = alias.get(ai.name);
-                    Expression sub = dto.getExpression().clone();
-                    if (ai.hasChildren())
-                        for (int j = 0; j < ai.children.size(); j++) {
-                            Expression varExp = new Var(dto.getVarNames().get(j));
-                            String varType = dto.getVarTypes().get(j);
-                            Expression aliasExp = ai.children.get(j);
-
-                            boolean checks = TypeInfer.checkCompatibleType(varType, aliasExp, ctx, f);
-                            if (!checks)
-                                throw new Exception(
-                                        "Type Mismatch: Cannot substitute " + varExp + ":" + varType + " by " + aliasExp
-                                                + ":" + TypeInfer.getType(ctx, f, aliasExp).get().getQualifiedName()
-                                                + " in alias '" + ai.name + "'");
-
-                            sub = sub.substitute(varExp, aliasExp);
-                        }
-                    setChild(i, sub);
+        return e.auxChangeAlias(alias, ctx, f);
+    }
+
+    private Expression auxChangeAlias(Map<String, AliasDTO> alias, Context ctx, Factory f) throws Exception {
+        Expression[] updated = null;
+        for (int i = 0; i < children.length; i++) {
+            Expression child = children[i];
+            if (child == null)
+                continue;
+            Expression next = child;
+            if (child instanceof AliasInvocation) {
+                AliasInvocation ai = (AliasInvocation) child;
+                if (!alias.containsKey(ai.name))
+                    throw new Exception("Alias '" + ai.getName() + "' not found");
+                AliasDTO dto = alias.get(ai.name);
+                Expression sub = dto.getExpression();
+                for (int j = 0; j < ai.children.length; j++) {
+                    Expression varExp = new Var(dto.getVarNames().get(j));
+                    String varType = dto.getVarTypes().get(j);
+                    Expression aliasExp = ai.children[j];
+
+                    boolean checks = TypeInfer.checkCompatibleType(varType, aliasExp, ctx, f);
+                    if (!checks)
+                        throw new Exception("Type Mismatch: Cannot substitute " + varExp + ":" + varType + " by "
+                                + aliasExp + ":" + TypeInfer.getType(ctx, f, aliasExp).get().getQualifiedName()
+                                + " in alias '" + ai.name + "'");
+
+                    sub = sub.substitute(varExp, aliasExp);
                 }
-                children.get(i).auxChangeAlias(alias, ctx, f);
+                next = sub;
             }
+            next = next.auxChangeAlias(alias, ctx, f);
+            if (next != child) {
+                if (updated == null)
+                    updated = children.clone();
+                updated[i] = next;
+            }
+        }
+        return updated == null ? this : withChildren(updated);
     }
 }
@@ -1,21 +1,20 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class GroupExpression extends Expression {
 
     public GroupExpression(Expression e) {
-        addChild(e);
+        super(e);
     }
 
     public Expression getExpression() {
-        return children.get(0);
+        return children[0];
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+    public Expr<?> translate(TranslatorToZ3 ctx) throws Exception {
         return getExpression().eval(ctx);
     }
 
@@ -24,47 +23,22 @@ public class GroupExpression extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        getExpression().getVariableNames(toAdd);
-    }
-
-    @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
-        getExpression().getStateInvocations(toAdd, all);
-    }
-
-    @Override
-    public Expression clone() {
-        return new GroupExpression(getExpression().clone());
+    public boolean isBooleanTrue() {
+        return getExpression().isBooleanTrue();
     }
 
     @Override
-    public boolean isBooleanTrue() {
-        return getExpression().isBooleanTrue();
+    protected Expression withChildren(Expression[] children) {
+        return new GroupExpression(children[0]);
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((getExpression() == null) ? 0 : getExpression().hashCode());
-        return result;
+    protected int nodeHashCode() {
+        return 1;
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        GroupExpression other = (GroupExpression) obj;
-        if (getExpression() == null) {
-            if (other.getExpression() != null)
-                return false;
-        } else if (!getExpression().equals(other.getExpression()))
-            return false;
+    protected boolean nodeEquals(Expression other) {
         return true;
     }
 }
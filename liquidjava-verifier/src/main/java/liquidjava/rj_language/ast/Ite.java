@@ -1,31 +1,28 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class Ite extends Expression {
 
     public Ite(Expression e1, Expression e2, Expression e3) {
-        addChild(e1);
-        addChild(e2);
-        addChild(e3);
+        super(e1, e2, e3);
     }
 
     public Expression getCondition() {
-        return children.get(0);
+        return children[0];
     }
 
     public Expression getThen() {
-        return children.get(1);
+        return children[1];
     }
 
     public Expression getElse() {
-        return children.get(2);
+        return children[2];
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+    public Expr<?> translate(TranslatorToZ3 ctx) throws Exception {
         return ctx.makeIte(getCondition().eval(ctx), getThen().eval(ctx), getElse().eval(ctx));
     }
 
@@ -35,63 +32,22 @@ public class Ite extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        getCondition().getVariableNames(toAdd);
-        getThen().getVariableNames(toAdd);
-        getElse().getVariableNames(toAdd);
-    }
-
-    @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
-        getCondition().getStateInvocations(toAdd, all);
-        getThen().getStateInvocations(toAdd, all);
-        getElse().getStateInvocations(toAdd, all);
-    }
-
-    @Override
-    public Expression clone() {
-        return new Ite(getCondition().clone(), getThen().clone(), getElse().clone());
+    public boolean isBooleanTrue() {
+        return getCondition().isBooleanTrue() && getThen().isBooleanTrue() && getElse().isBooleanTrue();
     }
 
     @Override
-    public boolean isBooleanTrue() {
-        return getCondition().isBooleanTrue() && getThen().isBooleanTrue() && getElse().isBooleanTrue();
+    protected Expression withChildren(Expression[] children) {
+        return new Ite(children[0], children[1], children[2]);
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((getCondition() == null) ? 0 : getCondition().hashCode());
-        result = prime * result + ((getElse() == null) ? 0 : getElse().hashCode());
-        result = prime * result + ((getThen() == null) ? 0 : getThen().hashCode());
-        return result;
+    protected int nodeHashCode() {
+        return 3;
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        Ite other = (Ite) obj;
-        if (getCondition() == null) {
-            if (other.getCondition() != null)
-                return false;
-        } else if (!getCondition().equals(other.getCondition()))
-            return false;
-        if (getElse() == null) {
-            if (other.getElse() != null)
-                return false;
-        } else if (!getElse().equals(other.getElse()))
-            return false;
-        if (getThen() == null) {
-            if (other.getThen() != null)
-                return false;
-        } else if (!getThen().equals(other.getThen()))
-            return false;
+    protected boolean nodeEquals(Expression other) {
         return true;
     }
 }
@@ -1,12 +1,11 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class LiteralBoolean extends Expression {
 
-    boolean value;
+    final boolean value;
 
     public LiteralBoolean(boolean value) {
         this.value = value;
@@ -16,7 +15,7 @@ public class LiteralBoolean extends Expression {
         this.value = Boolean.parseBoolean(value);
     }
 
-    public Expr<?> eval(TranslatorToZ3 ctx) {
+    public Expr<?> translate(TranslatorToZ3 ctx) {
         return ctx.makeBooleanLiteral(value);
     }
 
@@ -25,45 +24,23 @@ public class LiteralBoolean extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        // end leaf
+    public boolean isBooleanTrue() {
+        return value;
     }
 
     @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
+    protected Expression withChildren(Expression[] children) {
         // end leaf
-
-    }
-
-    @Override
-    public Expression clone() {
-        return new LiteralBoolean(value);
-    }
-
-    @Override
-    public boolean isBooleanTrue() {
-        return value;
+        return this;
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (value ? 1231 : 1237);
-        return result;
+    protected int nodeHashCode() {
+        return value ? 1231 : 1237;
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        LiteralBoolean other = (LiteralBoolean) obj;
-        if (value != other.value)
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return value == ((LiteralBoolean) other).value;
     }
 }
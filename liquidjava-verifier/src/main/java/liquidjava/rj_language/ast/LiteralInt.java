@@ -1,12 +1,11 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class LiteralInt extends Expression {
 
-    private int value;
+    private final int value;
 
     public LiteralInt(int v) {
         value = v;
@@ -16,8 +15,12 @@ public class LiteralInt extends Expression {
         value = Integer.parseInt(v);
     }
 
+    public int getValue() {
+        return value;
+    }
+
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) {
+    public Expr<?> translate(TranslatorToZ3 ctx) {
         return ctx.makeIntegerLiteral(value);
     }
 
@@ -26,46 +29,23 @@ public class LiteralInt extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        // end leaf
-
+    public boolean isBooleanTrue() {
+        return false;
     }
 
     @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
+    protected Expression withChildren(Expression[] children) {
         // end leaf
-
-    }
-
-    @Override
-    public Expression clone() {
-        return new LiteralInt(value);
-    }
-
-    @Override
-    public boolean isBooleanTrue() {
-        return false;
+        return this;
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + value;
-        return result;
+    protected int nodeHashCode() {
+        return value;
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        LiteralInt other = (LiteralInt) obj;
-        if (value != other.value)
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return value == ((LiteralInt) other).value;
     }
 }
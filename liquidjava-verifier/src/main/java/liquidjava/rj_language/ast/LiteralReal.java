@@ -1,12 +1,11 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class LiteralReal extends Expression {
 
-    private double value;
+    private final double value;
 
     public LiteralReal(double v) {
         value = v;
@@ -16,8 +15,12 @@ public class LiteralReal extends Expression {
         value = Double.parseDouble(v);
     }
 
+    public double getValue() {
+        return value;
+    }
+
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) {
+    public Expr<?> translate(TranslatorToZ3 ctx) {
         return ctx.makeDoubleLiteral(value);
     }
 
@@ -26,48 +29,23 @@ public class LiteralReal extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        // end leaf
-
+    public boolean isBooleanTrue() {
+        return false;
     }
 
     @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
+    protected Expression withChildren(Expression[] children) {
         // end leaf
-
-    }
-
-    @Override
-    public Expression clone() {
-        return new LiteralReal(value);
-    }
-
-    @Override
-    public boolean isBooleanTrue() {
-        return false;
+        return this;
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        long temp;
-        temp = Double.doubleToLongBits(value);
-        result = prime * result + (int) (temp ^ (temp >>> 32));
-        return result;
+    protected int nodeHashCode() {
+        return Double.hashCode(value);
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        LiteralReal other = (LiteralReal) obj;
-        if (Double.doubleToLongBits(value) != Double.doubleToLongBits(other.value))
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return Double.compare(value, ((LiteralReal) other).value) == 0;
     }
 }
@@ -1,18 +1,17 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class LiteralString extends Expression {
-    private String value;
+    private final String value;
 
     public LiteralString(String v) {
         value = v;
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) {
+    public Expr<?> translate(TranslatorToZ3 ctx) {
         return ctx.makeString(value);
     }
 
@@ -21,49 +20,23 @@ public class LiteralString extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        // end leaf
-
+    public boolean isBooleanTrue() {
+        return false;
     }
 
     @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
+    protected Expression withChildren(Expression[] children) {
         // end leaf
-
-    }
-
-    @Override
-    public Expression clone() {
-        return new LiteralString(value);
-    }
-
-    @Override
-    public boolean isBooleanTrue() {
-        return false;
+        return this;
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((value == null) ? 0 : value.hashCode());
-        return result;
+    protected int nodeHashCode() {
+        return value.hashCode();
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        LiteralString other = (LiteralString) obj;
-        if (value == null) {
-            if (other.value != null)
-                return false;
-        } else if (!value.equals(other.value))
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return value.equals(((LiteralString) other).value);
     }
 }
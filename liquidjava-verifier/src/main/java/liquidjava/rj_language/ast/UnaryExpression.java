@@ -1,20 +1,19 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class UnaryExpression extends Expression {
 
-    private String op;
+    private final String op;
 
     public UnaryExpression(String op, Expression e) {
+        super(e);
         this.op = op;
-        addChild(e);
     }
 
     public Expression getExpression() {
-        return children.get(0);
+        return children[0];
     }
 
     public String getOp() {
@@ -22,7 +21,7 @@ public class UnaryExpression extends Expression {
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+    public Expr<?> translate(TranslatorToZ3 ctx) throws Exception {
         switch (op) {
         case "-":
             return ctx.makeMinus(getExpression().eval(ctx));
@@ -38,53 +37,22 @@ public class UnaryExpression extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        getExpression().getVariableNames(toAdd);
-    }
-
-    @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
-        getExpression().getStateInvocations(toAdd, all);
-    }
-
-    @Override
-    public Expression clone() {
-        return new UnaryExpression(op, getExpression().clone());
+    public boolean isBooleanTrue() {
+        return false;
     }
 
     @Override
-    public boolean isBooleanTrue() {
-        return false;
+    protected Expression withChildren(Expression[] children) {
+        return new UnaryExpression(op, children[0]);
     }
 
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((getExpression() == null) ? 0 : getExpression().hashCode());
-        result = prime * result + ((op == null) ? 0 : op.hashCode());
-        return result;
+    protected int nodeHashCode() {
+        return op.hashCode();
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        UnaryExpression other = (UnaryExpression) obj;
-        if (getExpression() == null) {
-            if (other.getExpression() != null)
-                return false;
-        } else if (!getExpression().equals(other.getExpression()))
-            return false;
-        if (op == null) {
-            if (other.op != null)
-                return false;
-        } else if (!op.equals(other.op))
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return op.equals(((UnaryExpression) other).op);
     }
 }
@@ -1,12 +1,11 @@
 package liquidjava.rj_language.ast;
 
 import com.microsoft.z3.Expr;
-import java.util.List;
 import liquidjava.smt.TranslatorToZ3;
 
 public class Var extends Expression {
 
-    private String name;
+    private final String name;
 
     public Var(String name) {
         this.name = name;
@@ -17,7 +16,7 @@ public class Var extends Expression {
     }
 
     @Override
-    public Expr<?> eval(TranslatorToZ3 ctx) throws Exception {
+    public Expr<?> translate(TranslatorToZ3 ctx) throws Exception {
         return ctx.makeVariable(name);
     }
 
@@ -26,48 +25,23 @@ public class Var extends Expression {
     }
 
     @Override
-    public void getVariableNames(List<String> toAdd) {
-        if (!toAdd.contains(name))
-            toAdd.add(name);
+    public boolean isBooleanTrue() {
+        return false;
     }
 
     @Override
-    public void getStateInvocations(List<String> toAdd, List<String> all) {
+    protected Expression withChildren(Expression[] children) {
         // end leaf
+        return this;
     }
 
     @Override
-    public Expression clone() {
-        return new Var(name);
-    }
-
-    @Override
-    public boolean isBooleanTrue() {
-        return false;
-    }
-
-    @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        return result;
+    protected int nodeHashCode() {
+        return name.hashCode();
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        Var other = (Var) obj;
-        if (name == null) {
-            if (other.name != null)
-                return false;
-        } else if (!name.equals(other.name))
-            return false;
-        return true;
+    protected boolean nodeEquals(Expression other) {
+        return name.equals(((Var) other).name);
     }
 }
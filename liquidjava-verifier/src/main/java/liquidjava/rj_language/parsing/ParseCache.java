@@ -0,0 +1,85 @@
+package liquidjava.rj_language.parsing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import liquidjava.rj_language.ast.Expression;
+
+/**
+ * Expressions already parsed, by the text of the refinement. The same refinements are parsed many times, e.g., the
+ * annotations of a method by each pass that reads them, so the parser keeps the expressions of the {@code maxEntries}
+ * texts used most recently. Expressions are immutable, so every lookup hands out the same expression.
+ */
+public class ParseCache {
+
+    private int maxEntries;
+    private final Map<String, Expression> entries;
+
+    private long hits;
+    private long misses;
+    private long parseNanos;
+
+    public ParseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > ParseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Sets the number of entries kept, for the following verification, and clears the statistics
+     *
+     * @param maxEntries
+     *            0 to parse every refinement
+     */
+    public synchronized void configure(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        if (entries.size() > this.maxEntries)
+            entries.clear();
+        hits = 0;
+        misses = 0;
+        parseNanos = 0;
+    }
+
+    /**
+     * Returns the expression of the refinement, or null if it was not parsed yet
+     *
+     * @param text
+     *
+     * @return
+     */
+    public synchronized Expression get(String text) {
+        Expression e = entries.get(text);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e;
+    }
+
+    /**
+     * Keeps the expression parsed from the refinement
+     *
+     * @param text
+     * @param e
+     * @param nanos
+     *            time taken to parse it
+     */
+    public synchronized void put(String text, Expression e, long nanos) {
+        parseNanos += nanos;
+        if (maxEntries > 0)
+            entries.put(text, e);
+    }
+
+    public synchronized String report() {
+        long total = hits + misses;
+        double average = misses == 0 ? 0.0 : (double) parseNanos / misses;
+        return String.format(
+                "Parse cache: %d hits, %d misses (%.1f%% hit rate), %d entries (max %d), %.1f ms parsing, about %.1f ms saved",
+                hits, misses, total == 0 ? 0.0 : 100.0 * hits / total, entries.size(), maxEntries, parseNanos / 1e6,
+                hits * average / 1e6);
+    }
+}
@@ -0,0 +1,550 @@
+package liquidjava.rj_language.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import liquidjava.processor.facade.AliasDTO;
+import liquidjava.processor.facade.GhostDTO;
+import liquidjava.rj_language.ast.AliasInvocation;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.Ite;
+import liquidjava.rj_language.ast.LiteralBoolean;
+import liquidjava.rj_language.ast.LiteralInt;
+import liquidjava.rj_language.ast.LiteralReal;
+import liquidjava.rj_language.ast.LiteralString;
+import liquidjava.rj_language.ast.UnaryExpression;
+import liquidjava.rj_language.ast.Var;
+
+/**
+ * Hand-written parser of the refinements language, which builds the expressions in a single pass over the text instead
+ * of checking it with the ANTLR grammar and parsing it again into a tree to visit. It follows the precedences the
+ * grammar (RJ.g4) gives to its left-recursive rules, including the unusual ones: all logical operators have the same
+ * precedence, {@code +}, {@code *}, {@code /} and {@code %} bind tighter than {@code -}, and a prefix {@code -} or
+ * {@code !} covers the arithmetic that follows it.
+ *
+ * <p>
+ * It only accepts complete, well-formed refinements. For anything else, such as syntax errors, text the grammar parses
+ * partially or invocations with a target, it returns null and the caller parses the text with the grammar, which
+ * reports the errors as it always did.
+ */
+public class PrecedenceParser {
+
+    private static final int EOF = 0;
+    private static final int LPAREN = 1;
+    private static final int RPAREN = 2;
+    private static final int NOT = 3;
+    private static final int QUESTION = 4;
+    private static final int COLON = 5;
+    private static final int MINUS = 6;
+    private static final int COMMA = 7;
+    private static final int DOT = 8;
+    private static final int LBRACE = 9;
+    private static final int RBRACE = 10;
+    private static final int ARRAY = 11;
+    private static final int TYPE = 12;
+    private static final int GHOST = 13;
+    private static final int PRIMITIVE = 14;
+    private static final int LOGOP = 15;
+    private static final int BOOLOP = 16;
+    private static final int ARITHOP = 17;
+    private static final int BOOL = 18;
+    private static final int ID_UPPER = 19;
+    private static final int OBJECT_TYPE = 20;
+    private static final int ID = 21;
+    private static final int STRING = 22;
+    private static final int INT = 23;
+    private static final int REAL = 24;
+
+    // rules of the grammar that can derive an expression, from the loosest to the tightest
+    private static final int PRED = 1;
+    private static final int EXP = 2;
+    private static final int OPERAND = 3;
+    private static final int LITERAL = 4;
+
+    private final String text;
+    private int[] kinds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+    private int pos;
+    // rule of the expression parsed last
+    private int level;
+
+    private PrecedenceParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a refinement
+     *
+     * @param text
+     *
+     * @return the expression, or null if the refinement has to be parsed with the grammar
+     */
+    public static Expression parsePredicate(String text) {
+        try {
+            PrecedenceParser p = new PrecedenceParser(text);
+            p.tokenize();
+            if (p.peek() == EOF)
+                return null;
+            Expression e = p.pred(0);
+            p.expect(EOF);
+            return e;
+        } catch (Unsupported u) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a ghost declaration, in the format {@code ghost? <type> <name> (<parameters>)?}
+     *
+     * @param text
+     *
+     * @return the declaration, or null if it has to be parsed with the grammar
+     */
+    public static GhostDTO parseGhost(String text) {
+        try {
+            PrecedenceParser p = new PrecedenceParser(text);
+            p.tokenize();
+            p.accept(GHOST);
+            String type = p.type();
+            String name = p.expect(ID);
+            List<String> parameters = new ArrayList<>();
+            if (p.accept(LPAREN)) {
+                if (p.peek() != RPAREN)
+                    do {
+                        parameters.add(p.type());
+                        p.accept(ID);
+                    } while (p.accept(COMMA));
+                p.expect(RPAREN);
+            }
+            p.expect(EOF);
+            return new GhostDTO(name, parameters, type);
+        } catch (Unsupported u) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses an alias declaration, in the format {@code type? <Name>(<type> <name>, ...) { <refinement> }}
+     *
+     * @param text
+     *
+     * @return the declaration, or null if it has to be parsed with the grammar
+     *
+     * @throws ParsingException
+     */
+    public static AliasDTO parseAlias(String text) throws ParsingException {
+        List<String> types = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        String name;
+        String ref;
+        try {
+            PrecedenceParser p = new PrecedenceParser(text);
+            p.tokenize();
+            p.accept(TYPE);
+            name = p.expect(ID_UPPER);
+            p.expect(LPAREN);
+            do {
+                types.add(p.type());
+                names.add(p.expect(ID));
+            } while (p.accept(COMMA));
+            p.expect(RPAREN);
+            p.expect(LBRACE);
+            int first = p.pos;
+            p.pred(0);
+            int last = p.pos - 1;
+            p.expect(RBRACE);
+            p.expect(EOF);
+            // the refinement with its whitespace, as written
+            ref = text.substring(p.starts[first], p.ends[last]);
+        } catch (Unsupported u) {
+            return null;
+        }
+        return new AliasDTO(name, types, names, ref);
+    }
+
+    // ----------------------- Refinements -----------------------
+
+    /** pred: '(' pred ')' | '!' pred | pred LOGOP pred | pred '?' pred ':' pred | exp */
+    private Expression pred(int precedence) {
+        Expression left;
+        if (accept(NOT)) {
+            Expression e = pred(4);
+            left = new UnaryExpression("!", e);
+            level = level >= OPERAND ? OPERAND : PRED;
+        } else {
+            left = exp(0);
+        }
+        while (true) {
+            if (peek() == LOGOP && precedence <= 3) {
+                String op = next();
+                Expression right = pred(4);
+                left = new BinaryExpression(left, op, right);
+            } else if (peek() == QUESTION && precedence <= 2) {
+                next();
+                Expression then = pred(0);
+                expect(COLON);
+                Expression otherwise = pred(3);
+                left = new Ite(left, then, otherwise);
+            } else {
+                return left;
+            }
+            level = PRED;
+        }
+    }
+
+    /** exp: '(' exp ')' | exp BOOLOP exp | operand */
+    private Expression exp(int precedence) {
+        Expression left = operand(0);
+        while (peek() == BOOLOP && precedence <= 2) {
+            require(EXP);
+            String op = next();
+            Expression right = exp(3);
+            require(EXP);
+            left = new BinaryExpression(left, op, right);
+            level = EXP;
+        }
+        return left;
+    }
+
+    /**
+     * operand: literalExpression | operand ARITHOP operand | operand '-' operand | '-' operand | '!' operand | '('
+     * operand ')'
+     */
+    private Expression operand(int precedence) {
+        Expression left;
+        if (accept(MINUS)) {
+            left = new UnaryExpression("-", operand(3));
+            require(OPERAND);
+            level = OPERAND;
+        } else if (accept(NOT)) {
+            left = new UnaryExpression("!", operand(2));
+            require(OPERAND);
+            level = OPERAND;
+        } else {
+            left = literalExpression();
+        }
+        while (true) {
+            int next;
+            if (peek() == ARITHOP && precedence <= 5)
+                next = 6;
+            else if (peek() == MINUS && precedence <= 4)
+                next = 5;
+            else
+                return left;
+            require(OPERAND);
+            String op = next();
+            Expression right = operand(next);
+            require(OPERAND);
+            left = new BinaryExpression(left, op, right);
+            level = OPERAND;
+        }
+    }
+
+    /** The literals, variables, invocations and parenthesized expressions, which all operators can take */
+    private Expression literalExpression() {
+        int kind = peek();
+        if (kind == LPAREN) {
+            next();
+            Expression e = pred(0);
+            expect(RPAREN);
+            // the rule of the group is the one of its expression, which decides the operators that can follow it
+            return new GroupExpression(e);
+        }
+        String token = next();
+        level = LITERAL;
+        switch (kind) {
+        case BOOL:
+            return new LiteralBoolean(token);
+        case STRING:
+            return new LiteralString(token);
+        case INT:
+            return new LiteralInt(token);
+        case REAL:
+            return new LiteralReal(token);
+        case ID:
+            if (peek() == DOT)
+                // invocations with a target are left to the grammar
+                throw Unsupported.INSTANCE;
+            if (peek() != LPAREN)
+                return new Var(token);
+            return new FunctionInvocation(token, args());
+        case ID_UPPER:
+            if (peek() != LPAREN)
+                throw Unsupported.INSTANCE;
+            return new AliasInvocation(token, args());
+        default:
+            throw Unsupported.INSTANCE;
+        }
+    }
+
+    /** '(' (pred (',' pred)*)? ')' */
+    private List<Expression> args() {
+        expect(LPAREN);
+        List<Expression> args = new ArrayList<>();
+        if (!accept(RPAREN)) {
+            do {
+                args.add(pred(0));
+            } while (accept(COMMA));
+            expect(RPAREN);
+        }
+        level = LITERAL;
+        return args;
+    }
+
+    /** Fails unless the expression parsed last can be derived from the rule */
+    private void require(int rule) {
+        if (level < rule)
+            throw Unsupported.INSTANCE;
+    }
+
+    // ----------------------- Declarations -----------------------
+
+    /** type: 'int' | 'double' | 'float' | 'boolean' | ID_UPPER | OBJECT_TYPE | type '[]' */
+    private String type() {
+        int kind = peek();
+        if (kind != PRIMITIVE && kind != ID_UPPER && kind != OBJECT_TYPE)
+            throw Unsupported.INSTANCE;
+        StringBuilder sb = new StringBuilder(next());
+        while (accept(ARRAY))
+            sb.append("[]");
+        return sb.toString();
+    }
+
+    // ----------------------- Tokens -----------------------
+
+    private int peek() {
+        return kinds[pos];
+    }
+
+    private String next() {
+        String token = text.substring(starts[pos], ends[pos]);
+        if (kinds[pos] != EOF)
+            pos++;
+        return token;
+    }
+
+    private boolean accept(int kind) {
+        if (kinds[pos] != kind)
+            return false;
+        next();
+        return true;
+    }
+
+    private String expect(int kind) {
+        if (kinds[pos] != kind)
+            throw Unsupported.INSTANCE;
+        return next();
+    }
+
+    /** Splits the text in the tokens of the lexer of the grammar: the longest match, the first rule on ties */
+    private void tokenize() {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            int end = i + 1;
+            int kind;
+            switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                i++;
+                continue;
+            case '(':
+                kind = LPAREN;
+                break;
+            case ')':
+                kind = RPAREN;
+                break;
+            case '?':
+                kind = QUESTION;
+                break;
+            case ':':
+                kind = COLON;
+                break;
+            case ',':
+                kind = COMMA;
+                break;
+            case '{':
+                kind = LBRACE;
+                break;
+            case '}':
+                kind = RBRACE;
+                break;
+            case '+':
+            case '*':
+            case '/':
+            case '%':
+                kind = ARITHOP;
+                break;
+            case '[':
+                kind = ARRAY;
+                end = expectChar(i + 1, ']');
+                break;
+            case '&':
+                kind = LOGOP;
+                end = expectChar(i + 1, '&');
+                break;
+            case '|':
+                kind = LOGOP;
+                end = expectChar(i + 1, '|');
+                break;
+            case '=':
+                kind = BOOLOP;
+                end = expectChar(i + 1, '=');
+                break;
+            case '!':
+                kind = charAt(i + 1) == '=' ? BOOLOP : NOT;
+                end = kind == BOOLOP ? i + 2 : i + 1;
+                break;
+            case '<':
+            case '>':
+                kind = BOOLOP;
+                end = charAt(i + 1) == '=' ? i + 2 : i + 1;
+                break;
+            case '-':
+                kind = text.startsWith("-->", i) ? LOGOP : MINUS;
+                end = kind == LOGOP ? i + 3 : i + 1;
+                break;
+            case '"':
+                kind = STRING;
+                end = text.indexOf('"', i + 1) + 1;
+                if (end == 0)
+                    throw Unsupported.INSTANCE;
+                break;
+            case '.':
+                kind = isDigit(charAt(i + 1)) ? REAL : DOT;
+                end = kind == REAL ? digits(i + 1) : i + 1;
+                break;
+            default:
+                if (isDigit(c)) {
+                    int intEnd = digits(i);
+                    while (charAt(intEnd) == '_' && isDigit(charAt(intEnd + 1)))
+                        intEnd = digits(intEnd + 1);
+                    int realEnd = digits(i);
+                    if (charAt(realEnd) == '.' && isDigit(charAt(realEnd + 1)))
+                        realEnd = digits(realEnd + 1);
+                    kind = intEnd >= realEnd ? INT : REAL;
+                    end = Math.max(intEnd, realEnd);
+                } else if (c == '#' || c == '_' || isLetter(c)) {
+                    end = word(i);
+                    kind = wordKind(i, end);
+                } else {
+                    throw Unsupported.INSTANCE;
+                }
+            }
+            add(kind, i, end);
+            i = end;
+        }
+        add(EOF, n, n);
+    }
+
+    /** The end of the longest of ID, ID_UPPER and OBJECT_TYPE that starts at i */
+    private int word(int i) {
+        int id = i;
+        while (charAt(id) == '#')
+            id++;
+        if (!isLetter(charAt(id)) && charAt(id) != '_')
+            throw Unsupported.INSTANCE;
+        id++;
+        while (isLetterOrDigit(charAt(id)) || charAt(id) == '_' || charAt(id) == '#')
+            id++;
+        int object = i;
+        if (isLetter(charAt(i))) {
+            object = alphanumerics(i + 1);
+            if (object - i >= 2 && charAt(object) == '.' && isLetter(charAt(object + 1)))
+                while (charAt(object) == '.' && isLetter(charAt(object + 1)))
+                    object = alphanumerics(object + 2);
+            else
+                object = i;
+        }
+        return Math.max(id, object);
+    }
+
+    private int wordKind(int start, int end) {
+        switch (text.substring(start, end)) {
+        case "type":
+            return TYPE;
+        case "ghost":
+            return GHOST;
+        case "int":
+        case "double":
+        case "float":
+        case "boolean":
+            return PRIMITIVE;
+        case "true":
+        case "false":
+            return BOOL;
+        default:
+        }
+        char c = text.charAt(start);
+        if (c >= 'A' && c <= 'Z' && alphanumerics(start + 1) == end)
+            return ID_UPPER;
+        for (int i = start; i < end; i++)
+            if (text.charAt(i) == '.')
+                return OBJECT_TYPE;
+        return ID;
+    }
+
+    private void add(int kind, int start, int end) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    private int expectChar(int i, char c) {
+        if (charAt(i) != c)
+            throw Unsupported.INSTANCE;
+        return i + 1;
+    }
+
+    private char charAt(int i) {
+        return i < text.length() ? text.charAt(i) : '\0';
+    }
+
+    private int digits(int i) {
+        while (isDigit(charAt(i)))
+            i++;
+        return i;
+    }
+
+    private int alphanumerics(int i) {
+        while (isLetterOrDigit(charAt(i)))
+            i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || isDigit(c);
+    }
+
+    /** Text outside the subset of the language this parser handles, left to the grammar */
+    private static class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final Unsupported INSTANCE = new Unsupported();
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -17,9 +17,43 @@ import rj.grammar.RJParser;
 
 public class RefinementsParser {
 
+    private static final ParseCache cache = new ParseCache(4096);
+    private static volatile boolean directParsing = true;
+    private static long direct;
+    private static long grammar;
+
+    /** Expressions already parsed, shared by every pass and verification in the process */
+    public static ParseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets how the following refinements are parsed, and clears the statistics
+     *
+     * @param directParsing
+     *            true to parse them with the {@link PrecedenceParser} first, false to parse them with the grammar only
+     */
+    public static synchronized void setDirectParsing(boolean directParsing) {
+        RefinementsParser.directParsing = directParsing;
+        direct = 0;
+        grammar = 0;
+    }
+
     public static Expression createAST(String toParse) throws ParsingException {
-        ParseTree pt = compile(toParse);
-        return CreateASTVisitor.create(pt);
+        Expression cached = cache.get(toParse);
+        if (cached != null)
+            return cached;
+        long start = System.nanoTime();
+        Expression e = directParsing ? PrecedenceParser.parsePredicate(toParse) : null;
+        record(e != null);
+        if (e == null)
+            e = parseWithGrammar(toParse);
+        if (e == null)
+            // alias and ghost declarations, which are not expressions
+            return null;
+        e = e.intern();
+        cache.put(toParse, e, System.nanoTime() - start);
+        return e;
     }
 
     /**
@@ -32,6 +66,33 @@ public class RefinementsParser {
      * @throws ParsingException
      */
     public static GhostDTO getGhostDeclaration(String s) throws ParsingException {
+        GhostDTO g = directParsing ? PrecedenceParser.parseGhost(s) : null;
+        record(g != null);
+        return g != null ? g : getGhostDeclarationWithGrammar(s);
+    }
+
+    public static AliasDTO getAliasDeclaration(String s) throws ParsingException {
+        AliasDTO a = directParsing ? PrecedenceParser.parseAlias(s) : null;
+        record(a != null);
+        return a != null ? a : getAliasDeclarationWithGrammar(s);
+    }
+
+    private static synchronized void record(boolean parsedDirectly) {
+        if (parsedDirectly)
+            direct++;
+        else
+            grammar++;
+    }
+
+    public static synchronized String report() {
+        return String.format("Parser: %d texts parsed directly, %d with the grammar", direct, grammar);
+    }
+
+    static Expression parseWithGrammar(String toParse) throws ParsingException {
+        return CreateASTVisitor.create(compile(toParse));
+    }
+
+    static GhostDTO getGhostDeclarationWithGrammar(String s) throws ParsingException {
         ParseTree rc = compile(s);
         GhostDTO g = GhostVisitor.getGhostDecl(rc);
         if (g == null)
@@ -39,7 +100,7 @@ public class RefinementsParser {
         return g;
     }
 
-    public static AliasDTO getAliasDeclaration(String s) throws ParsingException {
+    static AliasDTO getAliasDeclarationWithGrammar(String s) throws ParsingException {
         Optional<String> os = getErrors(s);
         if (os.isPresent())
             throw new ParsingException(os.get());
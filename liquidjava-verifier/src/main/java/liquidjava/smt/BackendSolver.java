@@ -0,0 +1,42 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Status;
+
+/** A solver of a {@link SolverBackend}, with a stack of assertions like an SMT-LIB2 solver */
+public interface BackendSolver extends AutoCloseable {
+
+    /**
+     * Limits the following checks
+     *
+     * @param timeout
+     *            in milliseconds, 0 for no limit
+     * @param rlimit
+     *            in z3 rlimit units, 0 for no limit
+     */
+    void setLimits(long timeout, long rlimit);
+
+    void add(BoolExpr assertion);
+
+    void push();
+
+    void pop();
+
+    /** Removes every assertion */
+    void reset();
+
+    /** Checks the satisfiability of the assertions together with the assumptions */
+    Status check(BoolExpr... assumptions);
+
+    /** Why the solver gave up on the last check it could not decide */
+    String getReasonUnknown();
+
+    /** Makes the solver keep the unsat cores of its checks, to be called before the first assertion */
+    void produceUnsatCores();
+
+    /** The assumptions of the last check, if it was unsat, that are enough for it to be unsat */
+    BoolExpr[] getUnsatCore();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,129 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.Status;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import liquidjava.processor.context.Context;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.Expression;
+import spoon.reflect.cu.SourcePosition;
+
+/**
+ * Checks the obligations of the arguments of a call, which share most of their premises, on one solver. Each premise is
+ * translated and asserted only once, guarded by an indicator literal ({@code guard ==> premise}), and so is the negated
+ * goal of each obligation. Each obligation is then decided with a check that assumes its own guard and the guards of
+ * its premises, so it is checked against exactly the premises it would have on its own.
+ */
+public class BatchChecker {
+
+    // '!' cannot appear in names of the refinements language
+    private static final String PREMISE_GUARD_FORMAT = "premise!%d";
+    private static final String GOAL_GUARD_FORMAT = "goal!%d";
+
+    private final VerificationSession session;
+    private int batches;
+    private int obligations;
+    private long premisesAsserted;
+    private long premisesShared;
+    private int floatingPoint;
+
+    BatchChecker(VerificationSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Checks that each subRef implies the supRef with the same index
+     *
+     * @param subRefs
+     * @param supRefs
+     * @param c
+     * @param p
+     *            position of the call in the source, used to tag the dumped queries, may be null
+     * @param encoding
+     *            encoding of the floating point terms
+     *
+     * @return the status of each obligation, or null if they have floating point terms, over reals or with IEEE 754,
+     *         whose encoding is chosen and recorded obligation by obligation
+     */
+    Status[] check(List<Predicate> subRefs, List<Predicate> supRefs, Context c, SourcePosition p,
+            FloatingPointEncoding encoding) throws Exception {
+        List<Expression> expressions = new ArrayList<>();
+        for (int i = 0; i < subRefs.size(); i++) {
+            expressions.add(subRefs.get(i).getExpression());
+            expressions.add(supRefs.get(i).getExpression());
+        }
+        boolean stringTheory = session.getStringAbstraction().useTheory(expressions, c);
+        String logic = session.getOptions().isLogicSolvers()
+                ? session.getLogicClassifier().classify(expressions, c, encoding, stringTheory) : null;
+        try (PooledContext pc = session.getContextPool().borrow();
+                BackendSolver solver = session.getBackend().mkSolver(pc.getZ3(), logic)) {
+            com.microsoft.z3.Context z3 = pc.getZ3();
+            TranslatorToZ3 tz3 = new TranslatorToZ3(c, pc, encoding, stringTheory);
+            Map<Expr<?>, BoolExpr> guards = new HashMap<>();
+            List<BoolExpr[]> assumptions = new ArrayList<>();
+            List<Expr<?>> queries = new ArrayList<>();
+            boolean dump = session.getQueryDump() != null;
+            int shared = 0;
+            for (int i = 0; i < subRefs.size(); i++) {
+                List<BoolExpr> a = new ArrayList<>();
+                List<Expr<?>> premises = new ArrayList<>();
+                for (Expression e : subRefs.get(i).getConjuncts()) {
+                    Expr<?> premise = e.eval(tz3);
+                    BoolExpr pg = guards.get(premise);
+                    if (pg == null) {
+                        pg = z3.mkBoolConst(String.format(PREMISE_GUARD_FORMAT, guards.size()));
+                        solver.add(z3.mkImplies(pg, (BoolExpr) premise));
+                        guards.put(premise, pg);
+                    } else
+                        shared++;
+                    a.add(pg);
+                    premises.add(premise);
+                }
+                // translated after its premises, so that the axioms cover their string literals
+                Expr<?> goal = tz3.withStringAxioms(supRefs.get(i).negate().getExpression().eval(tz3));
+                BoolExpr g = z3.mkBoolConst(String.format(GOAL_GUARD_FORMAT, i));
+                solver.add(z3.mkImplies(g, (BoolExpr) goal));
+                a.add(g);
+                // the whole query is only needed when it is dumped
+                Expr<?> query = goal;
+                if (dump)
+                    for (Expr<?> premise : premises)
+                        query = tz3.makeAnd(premise, query);
+                assumptions.add(a.toArray(new BoolExpr[0]));
+                queries.add(query);
+            }
+            // the verdicts of obligations over reals go through the fallback of the hybrid encoding one by one
+            if (tz3.usesFloatingPoint() || tz3.approximatesFloatingPoint()) {
+                floatingPoint++;
+                return null;
+            }
+
+            batches++;
+            obligations += subRefs.size();
+            premisesAsserted += guards.size();
+            premisesShared += shared;
+            Status[] result = new Status[subRefs.size()];
+            for (int i = 0; i < result.length; i++) {
+                session.setSolverLimits(solver);
+                long start = System.nanoTime();
+                result[i] = solver.check(assumptions.get(i));
+                session.getLogicClassifier().record(logic, System.nanoTime() - start);
+                if (dump)
+                    session.getQueryDump().write(z3, queries.get(i), p, result[i], System.nanoTime() - start);
+            }
+            return result;
+        }
+    }
+
+    public synchronized String report() {
+        long total = premisesAsserted + premisesShared;
+        return String.format(
+                "Call batches: %d batches of %d obligations, %d premises asserted, %d shared (%.1f%% sharing), %d calls with floating point terms checked one by one",
+                batches, obligations, premisesAsserted, premisesShared,
+                total == 0 ? 0.0 : 100.0 * premisesShared / total, floatingPoint);
+    }
+}
@@ -0,0 +1,90 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Status;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import spoon.reflect.cu.SourcePosition;
+
+/**
+ * Chooses, for each method, the encoding of the floating point terms of its obligations, and records which encoding
+ * decided each obligation with floating point terms. Under the hybrid encoding a method starts over reals and switches
+ * to IEEE 754 for the rest of the run at its first obligation that cannot be proved over reals.
+ */
+public class FloatingPointEncoder {
+
+    private final FloatingPointEncoding encoding;
+    private final Set<String> ieeeMethods = new HashSet<>();
+    private final List<String> decisions = new ArrayList<>();
+    private int real;
+    private int ieee;
+
+    FloatingPointEncoder(FloatingPointEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    public FloatingPointEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Encoding of the next obligation of a method
+     *
+     * @param method
+     *            the signature of the method, or null for obligations outside methods
+     *
+     * @return either IEEE or REAL
+     */
+    public synchronized FloatingPointEncoding select(String method) {
+        if (encoding == FloatingPointEncoding.IEEE
+                || (encoding == FloatingPointEncoding.HYBRID && ieeeMethods.contains(method)))
+            return FloatingPointEncoding.IEEE;
+        return FloatingPointEncoding.REAL;
+    }
+
+    /**
+     * Called when an obligation of the method could not be proved over reals
+     *
+     * @param method
+     *
+     * @return whether it has to be checked again with IEEE 754, as do the following obligations of the method
+     */
+    public synchronized boolean fallBack(String method) {
+        if (encoding != FloatingPointEncoding.HYBRID)
+            return false;
+        ieeeMethods.add(method);
+        return true;
+    }
+
+    /** Records the encoding that decided an obligation with floating point terms */
+    public synchronized void record(SourcePosition p, String method, FloatingPointEncoding e, Status s) {
+        if (encoding == FloatingPointEncoding.IEEE)
+            return;
+        if (e == FloatingPointEncoding.REAL)
+            real++;
+        else
+            ieee++;
+        decisions.add(String.format("%s in %s: %s with %s", describe(p), method == null ? "no method" : method,
+                QueryDump.smtStatus(s), e == FloatingPointEncoding.REAL ? "reals" : "IEEE 754"));
+    }
+
+    private static String describe(SourcePosition p) {
+        if (p == null || p.getFile() == null)
+            return "unknown position";
+        return p.getFile().getName() + ":" + p.getLine();
+    }
+
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(
+                "Floating point encoding: %s, %d obligations decided over reals, %d with IEEE 754, %d methods switched to IEEE 754",
+                encoding, real, ieee, ieeeMethods.size()));
+        if (real > 0)
+            sb.append("\n  Caveat: reals ignore rounding, overflow, infinities and NaN, so the obligations proved over"
+                    + " reals may not hold for floating point values");
+        for (String d : decisions)
+            sb.append("\n  ").append(d);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package liquidjava.smt;
+
+/** How float and double terms are translated to z3 */
+public enum FloatingPointEncoding {
+    /** Bit-precise IEEE 754 floating point */
+    IEEE,
+    /**
+     * Real arithmetic, much faster to solve but unsound: it ignores rounding, overflow, infinities and NaN, so an
+     * obligation proved over reals may not hold for the floating point values of the program
+     */
+    REAL,
+    /** Real arithmetic, falling back to IEEE 754 for the methods with an obligation that cannot be proved over reals */
+    HYBRID;
+
+    /** Parses the value of the option, which is the name of the encoding in any case */
+    static FloatingPointEncoding parse(String s) {
+        return valueOf(s.trim().toUpperCase());
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
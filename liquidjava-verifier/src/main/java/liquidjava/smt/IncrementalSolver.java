@@ -0,0 +1,114 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.Status;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent solver used in incremental mode. Every premise is asserted only once, guarded by an indicator literal
+ * ({@code guard ==> premise}), and each check enables the guards of the premises it needs as assumptions. The
+ * obligation itself is asserted inside a push/pop scope of its own, so a check only pays for the premises that no
+ * previous check has asserted, independently of the order in which they are gathered.
+ */
+public class IncrementalSolver implements AutoCloseable {
+
+    // '!' cannot appear in names of the refinements language
+    private static final String GUARD_FORMAT = "premise!%d";
+
+    private final VerificationSession session;
+    private final PooledContext pc;
+    private final BackendSolver solver;
+    private final Map<Expr<?>, BoolExpr> guards = new HashMap<>();
+
+    private String reasonUnknown;
+    private int checks;
+    private int resets;
+    private long premisesAsserted;
+    private long premisesReused;
+
+    IncrementalSolver(VerificationSession session, PooledContext pc) {
+        this.session = session;
+        this.pc = pc;
+        this.solver = session.getBackend().mkSolver(pc.getZ3());
+    }
+
+    public PooledContext getContext() {
+        return pc;
+    }
+
+    /**
+     * Checks the satisfiability of the premises together with the negated goal
+     *
+     * @param premises
+     * @param negatedGoal
+     *
+     * @return
+     */
+    public Status check(List<Expr<?>> premises, Expr<?> negatedGoal) {
+        checks++;
+        if (guards.size() + premises.size() > session.getOptions().getIncrementalMaxPremises())
+            reset();
+
+        BoolExpr[] assumptions = new BoolExpr[premises.size()];
+        try {
+            for (int i = 0; i < premises.size(); i++)
+                assumptions[i] = getGuard(premises.get(i));
+        } catch (RuntimeException e) {
+            // the guards may no longer match what is asserted in the solver
+            reset();
+            throw e;
+        }
+
+        session.setSolverLimits(solver);
+        solver.push();
+        try {
+            solver.add((BoolExpr) negatedGoal);
+            Status st = solver.check(assumptions);
+            if (st.equals(Status.UNKNOWN))
+                reasonUnknown = solver.getReasonUnknown();
+            return st;
+        } finally {
+            solver.pop();
+        }
+    }
+
+    /** Why the solver gave up on the last obligation it could not decide */
+    public String getReasonUnknown() {
+        return reasonUnknown;
+    }
+
+    private BoolExpr getGuard(Expr<?> premise) {
+        BoolExpr g = guards.get(premise);
+        if (g != null) {
+            premisesReused++;
+            return g;
+        }
+        com.microsoft.z3.Context z3 = pc.getZ3();
+        g = z3.mkBoolConst(String.format(GUARD_FORMAT, guards.size()));
+        solver.add(z3.mkImplies(g, (BoolExpr) premise));
+        guards.put(premise, g);
+        premisesAsserted++;
+        return g;
+    }
+
+    private void reset() {
+        solver.reset();
+        guards.clear();
+        resets++;
+    }
+
+    public String report() {
+        long total = premisesAsserted + premisesReused;
+        return String.format("Incremental solver: %d checks, %d premises asserted, %d reused (%.1f%% reuse), %d resets",
+                checks, premisesAsserted, premisesReused, total == 0 ? 0.0 : 100.0 * premisesReused / total, resets);
+    }
+
+    @Override
+    public void close() {
+        solver.close();
+        pc.close();
+    }
+}
@@ -0,0 +1,357 @@
+package liquidjava.smt;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import liquidjava.processor.context.Context;
+import liquidjava.processor.context.GhostFunction;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.LiteralInt;
+import liquidjava.rj_language.ast.UnaryExpression;
+import liquidjava.rj_language.ast.Var;
+import liquidjava.utils.Utils;
+import spoon.reflect.reference.CtTypeReference;
+
+/**
+ * Proves obligations over linear integer arithmetic with the interval domain. The premises that are linear comparisons
+ * bound the integer terms they mention (int and short variables, and function invocations that return int), those
+ * bounds are propagated between the premises, and a goal is proved when the bounds of its terms imply it. Premises that
+ * are not linear are left out, which can only weaken them, so the prover never refutes an obligation.
+ */
+public class IntervalProver {
+
+    static final int MAX_ROUNDS = 8;
+
+    private int queries;
+    private int proved;
+
+    /**
+     * Whether subRef implies supRef in the interval domain
+     *
+     * @param subRef
+     * @param supRef
+     * @param c
+     *
+     * @return true only if the obligation is valid, false when it could not be decided
+     */
+    public boolean proves(Predicate subRef, Predicate supRef, Context c) {
+        boolean r = new Query(c).proves(subRef, supRef);
+        synchronized (this) {
+            queries++;
+            if (r)
+                proved++;
+        }
+        return r;
+    }
+
+    public synchronized String report() {
+        return String.format("Interval prover: %d of %d queries proved without z3 (%.1f%%)", proved, queries,
+                queries == 0 ? 0.0 : 100.0 * proved / queries);
+    }
+
+    /** Sum of integer terms multiplied by constants, plus a constant */
+    private static class Linear {
+        final Map<Expression, BigInteger> coefficients = new LinkedHashMap<>();
+        BigInteger constant = BigInteger.ZERO;
+
+        static Linear constant(BigInteger k) {
+            Linear l = new Linear();
+            l.constant = k;
+            return l;
+        }
+
+        static Linear term(Expression t) {
+            Linear l = new Linear();
+            l.coefficients.put(t, BigInteger.ONE);
+            return l;
+        }
+
+        Linear plus(Linear o, BigInteger factor) {
+            Linear l = new Linear();
+            l.coefficients.putAll(coefficients);
+            for (Map.Entry<Expression, BigInteger> e : o.coefficients.entrySet()) {
+                BigInteger v = l.coefficients.getOrDefault(e.getKey(), BigInteger.ZERO)
+                        .add(e.getValue().multiply(factor));
+                if (v.signum() == 0)
+                    l.coefficients.remove(e.getKey());
+                else
+                    l.coefficients.put(e.getKey(), v);
+            }
+            l.constant = constant.add(o.constant.multiply(factor));
+            return l;
+        }
+
+        Linear times(BigInteger factor) {
+            return constant(BigInteger.ZERO).plus(this, factor);
+        }
+
+        boolean isConstant() {
+            return coefficients.isEmpty();
+        }
+    }
+
+    /** An integer interval, a null bound stands for infinity */
+    private static class Interval {
+        final BigInteger lo;
+        final BigInteger hi;
+
+        Interval(BigInteger lo, BigInteger hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        boolean isEmpty() {
+            return lo != null && hi != null && lo.compareTo(hi) > 0;
+        }
+    }
+
+    private static class Query {
+        private final Context context;
+        private final Map<Expression, Interval> bounds = new HashMap<>();
+
+        Query(Context context) {
+            this.context = context;
+        }
+
+        boolean proves(Predicate subRef, Predicate supRef) {
+            // every constraint is kept as a linear expression that is <= 0
+            List<Linear> constraints = new ArrayList<>();
+            for (Expression e : subRef.getConjuncts())
+                addConstraints(e, constraints);
+            if (!propagate(constraints))
+                return true; // the premises are contradictory
+            for (Expression g : supRef.getConjuncts())
+                if (!provesGoal(g))
+                    return false;
+            return true;
+        }
+
+        private void addConstraints(Expression e, List<Linear> constraints) {
+            e = ungroup(e);
+            if (e instanceof BinaryExpression && ((BinaryExpression) e).getOperator().equals(Utils.AND)) {
+                addConstraints(((BinaryExpression) e).getFirstOperand(), constraints);
+                addConstraints(((BinaryExpression) e).getSecondOperand(), constraints);
+                return;
+            }
+            if (!(e instanceof BinaryExpression))
+                return;
+            BinaryExpression be = (BinaryExpression) e;
+            Linear l = linearize(be.getFirstOperand());
+            Linear r = linearize(be.getSecondOperand());
+            if (l == null || r == null)
+                return;
+            Linear d = l.plus(r, BigInteger.ONE.negate()); // l - r
+            switch (be.getOperator()) {
+            case Utils.LE:
+                constraints.add(d);
+                break;
+            case Utils.LT:
+                constraints.add(d.plus(Linear.constant(BigInteger.ONE), BigInteger.ONE));
+                break;
+            case Utils.GE:
+                constraints.add(d.times(BigInteger.ONE.negate()));
+                break;
+            case Utils.GT:
+                constraints.add(d.times(BigInteger.ONE.negate()).plus(Linear.constant(BigInteger.ONE), BigInteger.ONE));
+                break;
+            case Utils.EQ:
+                constraints.add(d);
+                constraints.add(d.times(BigInteger.ONE.negate()));
+                break;
+            default:
+                break;
+            }
+        }
+
+        /**
+         * Tightens the bounds of the terms with each constraint until they no longer change
+         *
+         * @return false if some term has no possible value
+         */
+        private boolean propagate(List<Linear> constraints) {
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                boolean changed = false;
+                for (Linear c : constraints) {
+                    if (c.isConstant()) {
+                        if (c.constant.signum() > 0)
+                            return false;
+                        continue;
+                    }
+                    for (Map.Entry<Expression, BigInteger> e : c.coefficients.entrySet()) {
+                        // a * x <= -(constant + the other terms) <= -(constant + minimum of the other terms)
+                        BigInteger rest = c.constant;
+                        boolean bounded = true;
+                        for (Map.Entry<Expression, BigInteger> o : c.coefficients.entrySet()) {
+                            if (o.getKey().equals(e.getKey()))
+                                continue;
+                            BigInteger min = minimum(o.getValue(), boundsOf(o.getKey()));
+                            if (min == null) {
+                                bounded = false;
+                                break;
+                            }
+                            rest = rest.add(min);
+                        }
+                        if (!bounded)
+                            continue;
+                        BigInteger a = e.getValue();
+                        BigInteger limit = rest.negate();
+                        Interval old = boundsOf(e.getKey());
+                        Interval nw = a.signum() > 0 ? new Interval(old.lo, min(old.hi, floorDiv(limit, a)))
+                                : new Interval(max(old.lo, ceilDiv(limit, a)), old.hi);
+                        if (nw.isEmpty())
+                            return false;
+                        if (!equal(nw.lo, old.lo) || !equal(nw.hi, old.hi)) {
+                            bounds.put(e.getKey(), nw);
+                            changed = true;
+                        }
+                    }
+                }
+                if (!changed)
+                    break;
+            }
+            return true;
+        }
+
+        private boolean provesGoal(Expression g) {
+            g = ungroup(g);
+            if (!(g instanceof BinaryExpression))
+                return false;
+            BinaryExpression be = (BinaryExpression) g;
+            switch (be.getOperator()) {
+            case Utils.AND:
+                return provesGoal(be.getFirstOperand()) && provesGoal(be.getSecondOperand());
+            case Utils.OR:
+                return provesGoal(be.getFirstOperand()) || provesGoal(be.getSecondOperand());
+            default:
+                break;
+            }
+            Linear l = linearize(be.getFirstOperand());
+            Linear r = linearize(be.getSecondOperand());
+            if (l == null || r == null)
+                return false;
+            Interval d = evaluate(l.plus(r, BigInteger.ONE.negate()));
+            switch (be.getOperator()) {
+            case Utils.LE:
+                return d.hi != null && d.hi.signum() <= 0;
+            case Utils.LT:
+                return d.hi != null && d.hi.signum() < 0;
+            case Utils.GE:
+                return d.lo != null && d.lo.signum() >= 0;
+            case Utils.GT:
+                return d.lo != null && d.lo.signum() > 0;
+            case Utils.EQ:
+                return d.lo != null && d.hi != null && d.lo.signum() == 0 && d.hi.signum() == 0;
+            case Utils.NEQ:
+                return (d.lo != null && d.lo.signum() > 0) || (d.hi != null && d.hi.signum() < 0);
+            default:
+                return false;
+            }
+        }
+
+        private Interval evaluate(Linear l) {
+            BigInteger lo = l.constant;
+            BigInteger hi = l.constant;
+            for (Map.Entry<Expression, BigInteger> e : l.coefficients.entrySet()) {
+                Interval b = boundsOf(e.getKey());
+                BigInteger min = minimum(e.getValue(), b);
+                BigInteger max = minimum(e.getValue().negate(), b);
+                lo = lo == null || min == null ? null : lo.add(min);
+                hi = hi == null || max == null ? null : hi.subtract(max);
+            }
+            return new Interval(lo, hi);
+        }
+
+        /** Minimum of a * x for x in the interval, null if unbounded */
+        private BigInteger minimum(BigInteger a, Interval b) {
+            BigInteger bound = a.signum() > 0 ? b.lo : b.hi;
+            return bound == null ? null : a.multiply(bound);
+        }
+
+        private Interval boundsOf(Expression term) {
+            return bounds.getOrDefault(term, new Interval(null, null));
+        }
+
+        private Linear linearize(Expression e) {
+            e = ungroup(e);
+            if (e instanceof LiteralInt)
+                return Linear.constant(BigInteger.valueOf(((LiteralInt) e).getValue()));
+            if (e instanceof Var || e instanceof FunctionInvocation)
+                return isIntegerTerm(e) ? Linear.term(e) : null;
+            if (e instanceof UnaryExpression && ((UnaryExpression) e).getOp().equals(Utils.MINUS)) {
+                Linear l = linearize(((UnaryExpression) e).getExpression());
+                return l == null ? null : l.times(BigInteger.ONE.negate());
+            }
+            if (!(e instanceof BinaryExpression))
+                return null;
+            BinaryExpression be = (BinaryExpression) e;
+            Linear l = linearize(be.getFirstOperand());
+            Linear r = linearize(be.getSecondOperand());
+            if (l == null || r == null)
+                return null;
+            switch (be.getOperator()) {
+            case Utils.PLUS:
+                return l.plus(r, BigInteger.ONE);
+            case Utils.MINUS:
+                return l.plus(r, BigInteger.ONE.negate());
+            case Utils.MUL:
+                if (l.isConstant())
+                    return r.times(l.constant);
+                if (r.isConstant())
+                    return l.times(r.constant);
+                return null;
+            default:
+                return null;
+            }
+        }
+
+        /** Whether the term is translated to an integer of z3, as int and short variables are */
+        private boolean isIntegerTerm(Expression e) {
+            if (e instanceof Var) {
+                CtTypeReference<?> t = context.getVariableType(((Var) e).getName());
+                return t != null
+                        && (t.getQualifiedName().equals(Utils.INT) || t.getQualifiedName().equals(Utils.SHORT));
+            }
+            String name = ((FunctionInvocation) e).getName();
+            if (name.equals("getFromIndex"))
+                return true;
+            GhostFunction found = TranslatorContextToZ3.findGhost(context, name);
+            if (found == null)
+                return name.equals("length");
+            return found.getReturnType().toString().equals(Utils.INT);
+        }
+    }
+
+    private static Expression ungroup(Expression e) {
+        while (e instanceof GroupExpression)
+            e = ((GroupExpression) e).getExpression();
+        return e;
+    }
+
+    private static boolean equal(BigInteger a, BigInteger b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static BigInteger min(BigInteger a, BigInteger b) {
+        return a == null ? b : b == null ? a : a.min(b);
+    }
+
+    private static BigInteger max(BigInteger a, BigInteger b) {
+        return a == null ? b : b == null ? a : a.max(b);
+    }
+
+    private static BigInteger floorDiv(BigInteger a, BigInteger b) {
+        BigInteger[] qr = a.divideAndRemainder(b);
+        return qr[1].signum() != 0 && (qr[1].signum() != b.signum()) ? qr[0].subtract(BigInteger.ONE) : qr[0];
+    }
+
+    private static BigInteger ceilDiv(BigInteger a, BigInteger b) {
+        return floorDiv(a.negate(), b).negate();
+    }
+}
@@ -0,0 +1,223 @@
+package liquidjava.smt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import liquidjava.processor.context.Context;
+import liquidjava.processor.context.GhostFunction;
+import liquidjava.rj_language.ast.AliasInvocation;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.LiteralInt;
+import liquidjava.rj_language.ast.LiteralReal;
+import liquidjava.rj_language.ast.LiteralString;
+import liquidjava.rj_language.ast.UnaryExpression;
+import liquidjava.rj_language.ast.Var;
+import spoon.reflect.reference.CtTypeReference;
+
+/**
+ * Works out the SMT-LIB logic of a query from the types of its terms, so that it can be checked on a solver specialized
+ * for that logic instead of the general one. Queries outside the logics in {@link #LOGICS}, such as the ones with
+ * floating point terms mixed with other theories or with strings under the string theory, are left to the general
+ * solver. Also records the time spent on the queries of each logic.
+ */
+public class LogicClassifier {
+
+    /** Name used in the statistics for the queries checked on the general solver */
+    public static final String GENERAL = "general";
+
+    // logics z3 has specialized solvers for
+    private static final Set<String> LOGICS = Set.of("QF_UF", "QF_LIA", "QF_UFLIA", "QF_ALIA", "QF_AUFLIA", "QF_NIA",
+            "QF_UFNIA", "QF_LRA", "QF_UFLRA", "QF_NRA", "QF_FP");
+
+    private final Map<String, long[]> stats = new TreeMap<>();
+    private int fallbacks;
+
+    /** Theories the terms of a query belong to */
+    private static class Features {
+        boolean uninterpreted;
+        boolean arrays;
+        boolean integers;
+        boolean reals;
+        boolean nonLinear;
+        boolean floatingPoint;
+        boolean strings;
+    }
+
+    /**
+     * The logic of a query
+     *
+     * @param expressions
+     *            the formulas of the query
+     * @param c
+     *            context where the variables and ghosts of the query are declared
+     * @param encoding
+     *            encoding of the floating point terms, REAL to have them classified as reals
+     * @param stringTheory
+     *            whether strings are translated with the string theory, otherwise they are uninterpreted
+     *
+     * @return the name of the logic, or null if the query has to be checked on the general solver
+     */
+    public String classify(List<Expression> expressions, Context c, FloatingPointEncoding encoding,
+            boolean stringTheory) {
+        Features f = new Features();
+        boolean real = encoding == FloatingPointEncoding.REAL;
+        for (Expression e : expressions)
+            visit(e, c, real, f);
+        if (f.strings && !stringTheory) {
+            f.strings = false;
+            f.uninterpreted = true;
+        }
+        return logic(f);
+    }
+
+    private static String logic(Features f) {
+        if (f.strings)
+            return null;
+        if (f.floatingPoint)
+            return f.uninterpreted || f.arrays || f.integers || f.reals ? null : "QF_FP";
+        String arith = "";
+        if (f.integers && f.reals)
+            return null;
+        if (f.integers)
+            arith = f.nonLinear ? "NIA" : "LIA";
+        else if (f.reals)
+            arith = f.nonLinear ? "NRA" : "LRA";
+        String logic = "QF_" + (f.arrays ? "A" : "") + (f.uninterpreted || arith.isEmpty() ? "UF" : "") + arith;
+        return LOGICS.contains(logic) ? logic : null;
+    }
+
+    private static void visit(Expression e, Context c, boolean real, Features f) {
+        if (e instanceof Var)
+            type(c.getVariableType(((Var) e).getName()), real, f);
+        else if (e instanceof LiteralInt)
+            f.integers = true;
+        else if (e instanceof LiteralReal) {
+            if (real)
+                f.reals = true;
+            else
+                f.floatingPoint = true;
+        } else if (e instanceof LiteralString)
+            f.strings = true;
+        else if (e instanceof FunctionInvocation)
+            function(((FunctionInvocation) e).getName(), c, real, f);
+        else if (e instanceof AliasInvocation)
+            f.uninterpreted = true;
+        else if (e instanceof BinaryExpression) {
+            BinaryExpression b = (BinaryExpression) e;
+            String op = b.getOperator();
+            if ((op.equals("*") && !isNumeral(b.getFirstOperand()) && !isNumeral(b.getSecondOperand()))
+                    || ((op.equals("/") || op.equals("%")) && !isNumeral(b.getSecondOperand())))
+                f.nonLinear = true;
+        }
+        for (Expression child : e.getChildren())
+            visit(child, c, real, f);
+    }
+
+    private static boolean isNumeral(Expression e) {
+        if (e instanceof GroupExpression)
+            return isNumeral(((GroupExpression) e).getExpression());
+        if (e instanceof UnaryExpression && ((UnaryExpression) e).getOp().equals("-"))
+            return isNumeral(((UnaryExpression) e).getExpression());
+        return e instanceof LiteralInt || e instanceof LiteralReal;
+    }
+
+    private static void function(String name, Context c, boolean real, Features f) {
+        f.uninterpreted = true;
+        switch (name) {
+        case "length":
+        case "addToIndex":
+        case "getFromIndex":
+            // declared as functions over int[], see TranslatorContextToZ3
+            f.arrays = true;
+            f.integers = true;
+            return;
+        default:
+            GhostFunction gh = TranslatorContextToZ3.findGhost(c, name);
+            if (gh == null)
+                return;
+            ghostType(gh.getReturnType().toString(), real, f);
+            for (CtTypeReference<?> t : gh.getParametersTypes())
+                ghostType(t.toString(), real, f);
+        }
+    }
+
+    /** Adds the theory of the sort of a variable of the java type, as in {@link Z3SymbolTable#getVariableSort} */
+    private static void type(CtTypeReference<?> t, boolean real, Features f) {
+        if (t == null)
+            return;
+        String name = t.getQualifiedName();
+        if (name.equals("int") || name.equals("short"))
+            f.integers = true;
+        else
+            ghostType(name, real, f);
+    }
+
+    /** Adds the theory of the sort of a ghost parameter or result, as in {@link Z3SymbolTable#getGhostSort} */
+    private static void ghostType(String name, boolean real, Features f) {
+        switch (name) {
+        case "int":
+            f.integers = true;
+            break;
+        case "boolean":
+            break;
+        case "long":
+            f.reals = true;
+            break;
+        case "float":
+        case "double":
+            if (real)
+                f.reals = true;
+            else
+                f.floatingPoint = true;
+            break;
+        case "int[]":
+            f.arrays = true;
+            f.integers = true;
+            break;
+        case "String":
+        case "java.lang.String":
+            f.strings = true;
+            break;
+        default:
+            f.uninterpreted = true;
+        }
+    }
+
+    /** Whether the solver gave up because it reached the time or resource limit of the check */
+    public static boolean isLimit(String reasonUnknown) {
+        return reasonUnknown != null && (reasonUnknown.contains("timeout") || reasonUnknown.contains("cancel")
+                || reasonUnknown.contains("resource"));
+    }
+
+    /**
+     * Records a query checked on the solver of a logic
+     *
+     * @param logic
+     *            null for the general solver
+     * @param nanos
+     *            time of the check
+     */
+    public synchronized void record(String logic, long nanos) {
+        long[] s = stats.computeIfAbsent(logic == null ? GENERAL : logic, k -> new long[2]);
+        s[0]++;
+        s[1] += nanos;
+    }
+
+    /** Records a query that the solver of its logic could not decide and was checked again on the general solver */
+    public synchronized void recordFallback() {
+        fallbacks++;
+    }
+
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder("Query logics:");
+        if (stats.isEmpty())
+            sb.append(" none,");
+        for (Map.Entry<String, long[]> e : stats.entrySet())
+            sb.append(String.format(" %s %d queries in %.1f ms,", e.getKey(), e.getValue()[0], e.getValue()[1] / 1e6));
+        return sb.append(String.format(" %d fallbacks to the general solver", fallbacks)).toString();
+    }
+}
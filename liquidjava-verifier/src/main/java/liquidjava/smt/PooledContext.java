@@ -0,0 +1,82 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Context;
+
+/**
+ * A z3 context borrowed from a {@link Z3ContextPool}. Closing it gives the context back to the pool instead of
+ * releasing the native resources.
+ */
+public class PooledContext implements AutoCloseable {
+
+    private final Context z3;
+    // by encoding of floating point terms and of strings, see getSymbols
+    private final Z3SymbolTable[] symbols = new Z3SymbolTable[4];
+    private final Z3ContextPool pool;
+    private int uses;
+    // set by the thread that cancels the solver running on the context
+    private volatile boolean interrupted;
+
+    PooledContext(Z3ContextPool pool) {
+        this.pool = pool;
+        this.z3 = new Context();
+    }
+
+    public Context getZ3() {
+        return z3;
+    }
+
+    /** Sorts and declarations already created in the context */
+    public Z3SymbolTable getSymbols() {
+        return getSymbols(FloatingPointEncoding.IEEE, true);
+    }
+
+    /**
+     * Sorts and declarations already created in the context for the given encodings
+     *
+     * @param encoding
+     *            encoding of floating point terms
+     * @param stringTheory
+     *            whether strings are encoded with the string theory
+     *
+     * @return
+     */
+    public Z3SymbolTable getSymbols(FloatingPointEncoding encoding, boolean stringTheory) {
+        boolean real = encoding == FloatingPointEncoding.REAL;
+        int i = (real ? 1 : 0) + (stringTheory ? 2 : 0);
+        if (symbols[i] == null)
+            symbols[i] = new Z3SymbolTable(z3, real, stringTheory);
+        return symbols[i];
+    }
+
+    /** Counts a compound expression translated on this context, reusing a previous translation or not */
+    void recordTranslation(boolean reused) {
+        pool.recordTranslation(reused);
+    }
+
+    int getUses() {
+        return uses;
+    }
+
+    void markUsed() {
+        uses++;
+    }
+
+    /** Interrupts the solver running on this context, which is then closed instead of going back to the pool */
+    public void interrupt() {
+        interrupted = true;
+        z3.interrupt();
+    }
+
+    boolean isInterrupted() {
+        return interrupted;
+    }
+
+    void dispose() {
+        z3.close();
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+}
@@ -0,0 +1,124 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Status;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import liquidjava.processor.context.Context;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.Expression;
+
+/**
+ * Finds the premises a proved obligation needed, as the unsat core of a check in which each premise is asserted behind
+ * an indicator literal ({@code guard ==> premise}). The {@link VerdictStore} keeps the cores for the next runs, where
+ * an obligation is first checked with the premises of its core only, and with all of them if that does not prove it.
+ */
+public class PremiseCores {
+
+    // '!' cannot appear in names of the refinements language
+    private static final String PREMISE_GUARD_FORMAT = "premise!%d";
+
+    private final VerificationSession session;
+    private int extracted;
+    private long premises;
+    private long kept;
+    private int tried;
+    private int proved;
+    private int fallbacks;
+
+    PremiseCores(VerificationSession session) {
+        this.session = session;
+    }
+
+    /**
+     * The premises of subRef in the core
+     *
+     * @param subRef
+     * @param core
+     *            indexes of the premises in the order of {@link QueryCanonicalizer#sortPremises}
+     * @param c
+     *
+     * @return the conjunction of the premises, or null if the core does not fit them
+     */
+    public Predicate reduce(Predicate subRef, int[] core, Context c) {
+        List<Expression> sorted = QueryCanonicalizer.sortPremises(subRef, c);
+        Predicate result = null;
+        for (int i : core) {
+            if (i < 0 || i >= sorted.size())
+                return null;
+            Predicate p = new Predicate(sorted.get(i));
+            result = result == null ? p : Predicate.createConjunction(result, p);
+        }
+        synchronized (this) {
+            tried++;
+        }
+        return result == null ? new Predicate() : result;
+    }
+
+    /**
+     * Finds the premises of subRef needed to prove supRef
+     *
+     * @param subRef
+     * @param supRef
+     * @param c
+     * @param encoding
+     *            encoding of the floating point terms
+     *
+     * @return indexes of the premises in the order of {@link QueryCanonicalizer#sortPremises}, or null if the
+     *         obligation could not be proved
+     */
+    public int[] extract(Predicate subRef, Predicate supRef, Context c, FloatingPointEncoding encoding) {
+        List<Expression> sorted = QueryCanonicalizer.sortPremises(subRef, c);
+        try (PooledContext pc = session.getContextPool().borrow();
+                BackendSolver solver = session.getBackend().mkSolver(pc.getZ3())) {
+            com.microsoft.z3.Context z3 = pc.getZ3();
+            solver.produceUnsatCores();
+            TranslatorToZ3 tz3 = new TranslatorToZ3(c, pc, encoding, session.getStringAbstraction()
+                    .needsTheory(List.of(subRef.getExpression(), supRef.getExpression()), c));
+            Map<BoolExpr, Integer> indexes = new HashMap<>();
+            BoolExpr[] guards = new BoolExpr[sorted.size()];
+            for (int i = 0; i < guards.length; i++) {
+                guards[i] = z3.mkBoolConst(String.format(PREMISE_GUARD_FORMAT, i));
+                solver.add(z3.mkImplies(guards[i], (BoolExpr) sorted.get(i).eval(tz3)));
+                indexes.put(guards[i], i);
+            }
+            // translated last, so that the axioms cover the string literals of the premises
+            solver.add((BoolExpr) tz3.withStringAxioms(supRef.negate().getExpression().eval(tz3)));
+            session.setSolverLimits(solver);
+            if (!solver.check(guards).equals(Status.UNSATISFIABLE))
+                return null;
+            List<Integer> core = new ArrayList<>();
+            for (BoolExpr g : solver.getUnsatCore())
+                if (indexes.containsKey(g))
+                    core.add(indexes.get(g));
+            synchronized (this) {
+                extracted++;
+                premises += guards.length;
+                kept += core.size();
+            }
+            return core.stream().sorted().mapToInt(Integer::intValue).toArray();
+        } catch (Exception e) {
+            // the obligation was already proved, it only misses its core
+            return null;
+        }
+    }
+
+    /** Counts an obligation proved with the premises of its core */
+    public synchronized void recordProved() {
+        proved++;
+    }
+
+    /** Counts an obligation that was not proved with its core and had to be checked again with all its premises */
+    public synchronized void recordFallback() {
+        fallbacks++;
+    }
+
+    public synchronized String report() {
+        return String.format(
+                "Unsat cores: %d extracted, keeping %d of %d premises (%.1f%% removed), %d obligations checked with their core first, %d proved, %d fallbacks to all premises",
+                extracted, kept, premises, premises == 0 ? 0.0 : 100.0 * (premises - kept) / premises, tried, proved,
+                fallbacks);
+    }
+}
@@ -0,0 +1,112 @@
+package liquidjava.smt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.AliasInvocation;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.Var;
+
+/**
+ * Removes the premises of an obligation that cannot influence its goal, keeping only the conjuncts that transitively
+ * share a variable, ghost function or alias with it. Conjuncts without symbols are always kept. Removing premises can
+ * only turn a valid obligation into an invalid one, so when the sliced obligation is not valid it has to be checked
+ * again with all its premises.
+ */
+public class PremiseSlicer {
+
+    private int queries;
+    private int sliced;
+    private long premises;
+    private long kept;
+    private int largestBefore;
+    private int largestAfter;
+    private int fallbacks;
+
+    /**
+     * Returns the premises of subRef that can influence supRef, or subRef itself if all of them can
+     *
+     * @param subRef
+     * @param supRef
+     *
+     * @return
+     */
+    public Predicate slice(Predicate subRef, Predicate supRef) {
+        List<Expression> conjuncts = subRef.getConjuncts();
+        List<Set<String>> symbols = new ArrayList<>();
+        for (Expression e : conjuncts)
+            symbols.add(getSymbols(e));
+
+        Set<String> relevant = getSymbols(supRef.getExpression());
+        boolean[] keep = new boolean[conjuncts.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < keep.length; i++)
+                if (!keep[i] && (symbols.get(i).isEmpty() || !Collections.disjoint(symbols.get(i), relevant))) {
+                    keep[i] = true;
+                    relevant.addAll(symbols.get(i));
+                    changed = true;
+                }
+        }
+
+        Predicate result = null;
+        int count = 0;
+        for (int i = 0; i < keep.length; i++)
+            if (keep[i]) {
+                Predicate p = new Predicate(conjuncts.get(i));
+                result = result == null ? p : Predicate.createConjunction(result, p);
+                count++;
+            }
+        record(conjuncts.size(), count);
+        if (count == conjuncts.size())
+            return subRef;
+        return result == null ? new Predicate() : result;
+    }
+
+    private synchronized void record(int before, int after) {
+        queries++;
+        premises += before;
+        kept += after;
+        if (after < before)
+            sliced++;
+        if (before - after > largestBefore - largestAfter) {
+            largestBefore = before;
+            largestAfter = after;
+        }
+    }
+
+    /** Counts an obligation that was not valid once sliced and had to be checked again with all its premises */
+    public synchronized void recordFallback() {
+        fallbacks++;
+    }
+
+    private static Set<String> getSymbols(Expression e) {
+        Set<String> s = new HashSet<>();
+        auxGetSymbols(e, s);
+        return s;
+    }
+
+    private static void auxGetSymbols(Expression e, Set<String> s) {
+        if (e instanceof Var)
+            s.add(((Var) e).getName());
+        else if (e instanceof FunctionInvocation)
+            s.add(((FunctionInvocation) e).getName() + "()");
+        else if (e instanceof AliasInvocation)
+            s.add(((AliasInvocation) e).getName() + "()");
+        for (Expression ch : e.getChildren())
+            auxGetSymbols(ch, s);
+    }
+
+    public synchronized String report() {
+        return String.format(
+                "Premise slicing: %d queries, %d sliced, %d of %d premises kept (%.1f%% removed), "
+                        + "largest cut %d -> %d premises, %d fallbacks to all premises",
+                queries, sliced, kept, premises, premises == 0 ? 0.0 : 100.0 * (premises - kept) / premises,
+                largestBefore, largestAfter, fallbacks);
+    }
+}
@@ -0,0 +1,86 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Status;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verdicts of the subtyping obligations already sent to z3, indexed by the key built by {@link QueryCanonicalizer}.
+ * Holds at most {@code maxEntries} verdicts, evicting the least recently used one, and, when given a
+ * {@link VerdictStore}, also looks up and records verdicts on disk.
+ */
+public class QueryCache {
+
+    private final int maxEntries;
+    private final Map<String, Status> entries;
+    private final VerdictStore store;
+
+    private long hits;
+    private long storeHits;
+    private long misses;
+    private long evictions;
+
+    public QueryCache(int maxEntries, VerdictStore store) {
+        this.maxEntries = maxEntries;
+        this.store = store;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Status> eldest) {
+                boolean evict = size() > QueryCache.this.maxEntries;
+                if (evict)
+                    evictions++;
+                return evict;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0 || store != null;
+    }
+
+    public VerdictStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the verdict stored for the key, or null if the obligation was not checked yet
+     *
+     * @param key
+     *
+     * @return
+     */
+    public synchronized Status get(String key) {
+        Status s = entries.get(key);
+        if (s == null && store != null) {
+            s = store.get(key);
+            if (s != null) {
+                storeHits++;
+                putEntry(key, s);
+            }
+        }
+        if (s == null)
+            misses++;
+        else
+            hits++;
+        return s;
+    }
+
+    public synchronized void put(String key, Status s) {
+        putEntry(key, s);
+        if (store != null)
+            store.put(key, s);
+    }
+
+    private void putEntry(String key, Status s) {
+        if (maxEntries > 0)
+            entries.put(key, s);
+    }
+
+    public synchronized String report() {
+        long total = hits + misses;
+        return String.format(
+                "Query cache: %d hits (%d from disk), %d misses (%.1f%% hit rate), %d entries (max %d), %d evictions",
+                hits, storeHits, misses, total == 0 ? 0.0 : 100.0 * hits / total, entries.size(), maxEntries,
+                evictions);
+    }
+}
@@ -0,0 +1,174 @@
+package liquidjava.smt;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import liquidjava.processor.context.Context;
+import liquidjava.processor.context.GhostFunction;
+import liquidjava.processor.context.RefinedVariable;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.AliasInvocation;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.Ite;
+import liquidjava.rj_language.ast.LiteralBoolean;
+import liquidjava.rj_language.ast.LiteralInt;
+import liquidjava.rj_language.ast.LiteralReal;
+import liquidjava.rj_language.ast.LiteralString;
+import liquidjava.rj_language.ast.UnaryExpression;
+import liquidjava.rj_language.ast.Var;
+import spoon.reflect.reference.CtTypeReference;
+
+/**
+ * Builds a key for a subtyping obligation that is the same for obligations that only differ in the names of their
+ * variables (e.g., the counters in {@code #fresh_12}) or in the order of their conjuncts. Variables are renamed by
+ * order of appearance and the key ends with the declarations the translation to z3 would use for them, so two
+ * obligations with the same key have the same verdict.
+ */
+public class QueryCanonicalizer {
+
+    private static final String HOLE = "_";
+
+    private final Context context;
+    private final Map<String, String> names = new LinkedHashMap<>();
+    private final Map<String, GhostFunction> functions = new LinkedHashMap<>();
+
+    private QueryCanonicalizer(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Canonical key of the obligation subRef <: supRef in the given context
+     *
+     * @param subRef
+     * @param supRef
+     * @param c
+     *
+     * @return
+     */
+    public static String canonicalize(Predicate subRef, Predicate supRef, Context c) {
+        return new QueryCanonicalizer(c).key(subRef, supRef);
+    }
+
+    /**
+     * The conjuncts of subRef in the order they have in the key, so that the premises at the same index of two
+     * obligations with the same key correspond to each other
+     *
+     * @param subRef
+     * @param c
+     *
+     * @return
+     */
+    public static List<Expression> sortPremises(Predicate subRef, Context c) {
+        return new QueryCanonicalizer(c).sortConjuncts(subRef.getConjuncts());
+    }
+
+    private String key(Predicate subRef, Predicate supRef) {
+        List<Expression> premises = sortConjuncts(subRef.getConjuncts());
+        List<Expression> goal = sortConjuncts(supRef.getConjuncts());
+
+        StringBuilder sb = new StringBuilder();
+        for (Expression e : premises) {
+            render(e, sb, false);
+            sb.append(';');
+        }
+        sb.append("|-");
+        for (Expression e : goal) {
+            render(e, sb, false);
+            sb.append(';');
+        }
+        sb.append("||");
+        appendDeclarations(sb);
+        return sb.toString();
+    }
+
+    /** Orders conjuncts by their shape, ignoring variable names, so that the renaming does not depend on them */
+    private List<Expression> sortConjuncts(List<Expression> conjuncts) {
+        Map<Expression, String> shapes = new HashMap<>();
+        for (Expression e : conjuncts) {
+            StringBuilder sb = new StringBuilder();
+            render(e, sb, true);
+            shapes.put(e, sb.toString());
+        }
+        List<Expression> sorted = new ArrayList<>(conjuncts);
+        sorted.sort(Comparator.comparing(shapes::get));
+        return sorted;
+    }
+
+    private void render(Expression e, StringBuilder sb, boolean shapeOnly) {
+        if (e instanceof GroupExpression) {
+            render(((GroupExpression) e).getExpression(), sb, shapeOnly);
+        } else if (e instanceof Var) {
+            sb.append(shapeOnly ? HOLE : rename(((Var) e).getName()));
+        } else if (e instanceof LiteralInt) {
+            sb.append('I').append(e.toString());
+        } else if (e instanceof LiteralReal) {
+            sb.append('R').append(e.toString());
+        } else if (e instanceof LiteralBoolean) {
+            sb.append('B').append(e.toString());
+        } else if (e instanceof LiteralString) {
+            String s = e.toString();
+            sb.append('S').append(s.length()).append(':').append(s);
+        } else {
+            sb.append('(');
+            if (e instanceof BinaryExpression)
+                sb.append(((BinaryExpression) e).getOperator());
+            else if (e instanceof UnaryExpression)
+                sb.append('u').append(((UnaryExpression) e).getOp());
+            else if (e instanceof Ite)
+                sb.append("ite");
+            else if (e instanceof FunctionInvocation)
+                sb.append(function(((FunctionInvocation) e).getName(), shapeOnly));
+            else if (e instanceof AliasInvocation) // translated as a function invocation as well
+                sb.append(function(((AliasInvocation) e).getName(), shapeOnly));
+            else
+                sb.append(e.getClass().getName());
+            for (Expression ch : e.getChildren()) {
+                sb.append(' ');
+                render(ch, sb, shapeOnly);
+            }
+            sb.append(')');
+        }
+    }
+
+    private String rename(String name) {
+        return names.computeIfAbsent(name, n -> "v" + names.size());
+    }
+
+    private String function(String name, boolean shapeOnly) {
+        if (!shapeOnly && !functions.containsKey(name))
+            functions.put(name, TranslatorContextToZ3.findGhost(context, name));
+        return "f:" + name;
+    }
+
+    private void appendDeclarations(StringBuilder sb) {
+        for (String name : names.keySet()) {
+            sb.append(names.get(name)).append(':').append(typeName(context.getVariableType(name)));
+            RefinedVariable v = context.getVariableWithSupertypes(name);
+            if (v != null)
+                sb.append(v.getSuperTypes().stream().map(this::typeName).collect(Collectors.joining(",", "<", ">")));
+            sb.append(';');
+        }
+        for (Map.Entry<String, GhostFunction> f : functions.entrySet()) {
+            sb.append(f.getKey()).append(':');
+            GhostFunction g = f.getValue();
+            if (g == null)
+                sb.append("builtin");
+            else
+                sb.append(
+                        g.getParametersTypes().stream().map(this::typeName).collect(Collectors.joining(",", "(", ")")))
+                        .append(typeName(g.getReturnType()));
+            sb.append(';');
+        }
+    }
+
+    private String typeName(CtTypeReference<?> t) {
+        return t == null ? "?" : t.getQualifiedName();
+    }
+}
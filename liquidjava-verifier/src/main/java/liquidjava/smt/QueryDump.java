@@ -0,0 +1,95 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.Status;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import spoon.reflect.cu.SourcePosition;
+
+/**
+ * Writes each query sent to z3 to a directory as a self-contained SMT-LIB2 file, with the declarations of its variables
+ * and ghost functions, the asserted formula and a header with the source position of the obligation, the verdict and
+ * the time z3 took. The files can be run again with {@link liquidjava.api.QueryReplay}.
+ */
+public class QueryDump {
+
+    public static final String SOURCE = "; source: ";
+    public static final String STATUS = "; status: ";
+    public static final String TIME = "; time-ms: ";
+
+    private final Path dir;
+    private final String runId;
+    private int written;
+    private int failed;
+
+    private QueryDump(Path dir) {
+        this.dir = dir;
+        this.runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    public static QueryDump open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        return new QueryDump(dir);
+    }
+
+    /**
+     * Writes a query that z3 already checked
+     *
+     * @param z3
+     *            context where the formula was created
+     * @param formula
+     * @param p
+     *            position of the obligation in the source, may be null
+     * @param s
+     *            verdict of z3
+     * @param nanos
+     *            time z3 took to check it
+     */
+    public void write(com.microsoft.z3.Context z3, Expr<?> formula, SourcePosition p, Status s, long nanos) {
+        int n;
+        synchronized (this) {
+            n = ++written;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("; LiquidJava verification query\n");
+        sb.append(SOURCE).append(describe(p)).append("\n");
+        sb.append(STATUS).append(smtStatus(s)).append("\n");
+        sb.append(TIME).append(String.format("%.3f", nanos / 1e6)).append("\n");
+        sb.append(
+                z3.benchmarkToSMTString("liquidjava-" + n, "", smtStatus(s), "", new BoolExpr[0], (BoolExpr) formula));
+        Path file = dir.resolve(String.format("query-%s-%05d.smt2", runId, n));
+        try {
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            synchronized (this) {
+                failed++;
+            }
+            System.err.println("Could not write the query " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static String describe(SourcePosition p) {
+        if (p == null || p.getFile() == null)
+            return "unknown";
+        return p.getFile().getPath() + ":" + p.getLine() + ", " + p.getColumn();
+    }
+
+    public static String smtStatus(Status s) {
+        switch (s) {
+        case SATISFIABLE:
+            return "sat";
+        case UNSATISFIABLE:
+            return "unsat";
+        default:
+            return "unknown";
+        }
+    }
+
+    public synchronized String report() {
+        return String.format("Query dump: %d queries written to %s%s", written - failed, dir,
+                failed == 0 ? "" : String.format(", %d could not be written", failed));
+    }
+}
@@ -4,35 +4,169 @@ import com.martiansoftware.jsap.SyntaxException;
 import com.microsoft.z3.Expr;
 import com.microsoft.z3.Status;
 import com.microsoft.z3.Z3Exception;
+import java.util.ArrayList;
+import java.util.List;
 import liquidjava.processor.context.Context;
 import liquidjava.rj_language.Predicate;
 import liquidjava.rj_language.ast.Expression;
+import spoon.reflect.cu.SourcePosition;
 
 public class SMTEvaluator {
 
+    private final VerificationSession session;
+    private String method;
+
+    public SMTEvaluator(VerificationSession session) {
+        this.session = session;
+    }
+
+    /** Method whose obligations are being verified, which decides the encoding of their floating point terms */
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
     public void verifySubtype(Predicate subRef, Predicate supRef, Context c)
-            throws TypeCheckError, GhostFunctionError, Exception {
-        // Creates a parser for our SMT-ready refinement language
-        // Discharges the verification to z3
+            throws TypeCheckError, GhostFunctionError, UnknownResultError, Exception {
+        verifySubtype(subRef, supRef, c, null);
+    }
+
+    /**
+     * Checks that subRef implies supRef
+     *
+     * @param subRef
+     * @param supRef
+     * @param c
+     * @param p
+     *            position of the obligation in the source, used to tag the dumped queries, may be null
+     */
+    public void verifySubtype(Predicate subRef, Predicate supRef, Context c, SourcePosition p)
+            throws TypeCheckError, GhostFunctionError, UnknownResultError, Exception {
+        if (provesWithoutZ3(subRef, supRef, c))
+            return;
+        QueryCache cache = session.getQueryCache();
+        String key = cache.isEnabled() ? cacheKey(subRef, supRef, c) : null;
+        verifyOnZ3(subRef, supRef, c, p, key, key == null ? null : cache.get(key));
+    }
+
+    /**
+     * Checks that each subRef implies the supRef with the same index. The obligations that reach z3 are checked
+     * together on one solver, and the ones it does not decide are checked one by one as in
+     * {@link #verifySubtype(Predicate, Predicate, Context, SourcePosition)}, as are the ones with an unsat core
+     * recorded in an earlier run. The cores of the obligations proved together are recorded as well.
+     *
+     * @param subRefs
+     * @param supRefs
+     * @param c
+     * @param p
+     *            position of the obligations in the source, used to tag the dumped queries, may be null
+     *
+     * @return the error that verifySubtype would throw for each obligation, null for the ones that hold
+     */
+    public Exception[] verifySubtypes(List<Predicate> subRefs, List<Predicate> supRefs, Context c, SourcePosition p) {
+        Exception[] errors = new Exception[subRefs.size()];
+        QueryCache cache = session.getQueryCache();
+        List<Integer> pending = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        String[] keys = new String[subRefs.size()];
+        Status[] status = new Status[subRefs.size()];
+        for (int i = 0; i < subRefs.size(); i++) {
+            if (provesWithoutZ3(subRefs.get(i), supRefs.get(i), c))
+                continue;
+            keys[i] = cache.isEnabled() ? cacheKey(subRefs.get(i), supRefs.get(i), c) : null;
+            status[i] = keys[i] == null ? null : cache.get(keys[i]);
+            if (status[i] == null) {
+                pending.add(i);
+                // an obligation with a recorded core is checked on its own, with the premises of the core first
+                if (!usesCores(keys[i]) || cache.getStore().getCore(keys[i]) == null)
+                    batch.add(i);
+            }
+        }
+
+        if (batch.size() > 1 && !session.isDeadlineExceeded()) {
+            List<Predicate> subs = new ArrayList<>();
+            List<Predicate> sups = new ArrayList<>();
+            for (int i : batch) {
+                subs.add(subRefs.get(i));
+                sups.add(supRefs.get(i));
+            }
+            try {
+                Status[] batched = session.getBatchChecker().check(subs, sups, c, p,
+                        session.getFloatingPointEncoder().select(method));
+                for (int j = 0; batched != null && j < batched.length; j++) {
+                    int i = batch.get(j);
+                    // undecided obligations are checked again on their own, with the portfolio if it is enabled
+                    if (batched[j].equals(Status.UNKNOWN))
+                        continue;
+                    status[i] = batched[j];
+                    if (keys[i] != null)
+                        cache.put(keys[i], status[i]);
+                    if (status[i].equals(Status.UNSATISFIABLE) && usesCores(keys[i]))
+                        recordCore(subRefs.get(i), supRefs.get(i), c, keys[i]);
+                }
+            } catch (Exception e) {
+                // checked one by one below, which reports the error of each obligation
+            }
+        }
 
+        for (int i = 0; i < subRefs.size(); i++) {
+            if (status[i] == null && !pending.contains(i))
+                continue;
+            if (Status.UNSATISFIABLE.equals(status[i]))
+                continue;
+            try {
+                verifyOnZ3(subRefs.get(i), supRefs.get(i), c, p, keys[i], status[i]);
+            } catch (Exception e) {
+                errors[i] = e;
+            }
+        }
+        return errors;
+    }
+
+    /** Proves the obligation with the provers that do not call z3 */
+    private boolean provesWithoutZ3(Predicate subRef, Predicate supRef, Context c) {
+        if (session.getOptions().isFastPath() && session.getSyntacticProver().proves(subRef, supRef))
+            return true;
+        return session.getOptions().isIntervals() && session.getIntervalProver().proves(subRef, supRef, c);
+    }
+
+    /**
+     * Checks the obligation on z3 unless its status is already known
+     *
+     * @param subRef
+     * @param supRef
+     * @param c
+     * @param p
+     * @param key
+     *            key of the obligation in the query cache, null if the cache is disabled
+     * @param s
+     *            status of the obligation, or null if it has to be checked
+     */
+    private void verifyOnZ3(Predicate subRef, Predicate supRef, Context c, SourcePosition p, String key, Status s)
+            throws TypeCheckError, GhostFunctionError, UnknownResultError, Exception {
         Predicate toVerify = Predicate.createConjunction(subRef, supRef.negate());
         // System.out.println("verification query: " + toVerify); // TODO remove
 
         try {
-            Expression exp = toVerify.getExpression();
-            Status s;
-            try (TranslatorToZ3 tz3 = new TranslatorToZ3(c)) {
-                // com.microsoft.z3.Expr
-                Expr<?> e = exp.eval(tz3);
-                s = tz3.verifyExpression(e);
-
-                if (s.equals(Status.SATISFIABLE)) {
-                    // System.out.println("result of SMT: Not Ok!");
-                    throw new TypeCheckError(subRef + " not a subtype of " + supRef);
-                }
+            if (s == null) {
+                s = checkWithCore(subRef, supRef, c, p, key);
+                if (key != null)
+                    session.getQueryCache().put(key, s);
+            }
+            if (s.equals(Status.SATISFIABLE)) {
+                // System.out.println("result of SMT: Not Ok!");
+                throw new TypeCheckError(subRef + " not a subtype of " + supRef);
             }
             // System.out.println("result of SMT: Ok!");
 
+        } catch (UnknownResultError e) {
+            session.recordUnknownResult(subRef + " <: " + supRef, e.getReason());
+            throw new UnknownResultError(
+                    "could not decide if " + subRef + " is a subtype of " + supRef + " (" + e.getReason() + ")",
+                    e.getReason());
         } catch (SyntaxException e1) {
             System.out.println("Could not parse: " + toVerify);
             e1.printStackTrace();
@@ -44,4 +178,219 @@ public class SMTEvaluator {
                 throw new Z3Exception(e.getLocalizedMessage());
         }
     }
+
+    /** Verdicts depend on the encoding of floating point terms, which is not the same in every run */
+    private String cacheKey(Predicate subRef, Predicate supRef, Context c) {
+        String key = QueryCanonicalizer.canonicalize(subRef, supRef, c);
+        FloatingPointEncoding encoding = session.getOptions().getFpEncoding();
+        return encoding == FloatingPointEncoding.IEEE ? key : key + "|fp:" + encoding;
+    }
+
+    /**
+     * Checks the obligation with the premises of the unsat core recorded for it in an earlier run, checking it again
+     * with all of them if it is not valid that way. The core of an obligation proved with all its premises is recorded
+     * for the next runs.
+     */
+    private Status checkWithCore(Predicate subRef, Predicate supRef, Context c, SourcePosition p, String key)
+            throws Exception {
+        if (!usesCores(key))
+            return checkPremises(subRef, supRef, c, p);
+        PremiseCores cores = session.getPremiseCores();
+        int[] core = session.getQueryCache().getStore().getCore(key);
+        Predicate reduced = core == null ? null : cores.reduce(subRef, core, c);
+        if (reduced != null) {
+            try {
+                if (check(reduced, supRef, c, p, true).equals(Status.UNSATISFIABLE)) {
+                    cores.recordProved();
+                    return Status.UNSATISFIABLE;
+                }
+            } catch (UnknownResultError e) {
+                // decided below with all the premises
+            }
+            cores.recordFallback();
+        }
+        Status s = checkPremises(subRef, supRef, c, p);
+        if (s.equals(Status.UNSATISFIABLE))
+            recordCore(subRef, supRef, c, key);
+        return s;
+    }
+
+    /** Whether the cores of the obligation with the key are kept between runs */
+    private boolean usesCores(String key) {
+        return key != null && session.getQueryCache().getStore() != null && session.getOptions().isCores();
+    }
+
+    /** Records the core of an obligation proved with all its premises, for the next runs */
+    private void recordCore(Predicate subRef, Predicate supRef, Context c, String key) {
+        int[] core = session.getPremiseCores().extract(subRef, supRef, c,
+                session.getFloatingPointEncoder().select(method));
+        if (core != null)
+            session.getQueryCache().getStore().putCore(key, core);
+    }
+
+    private Status checkPremises(Predicate subRef, Predicate supRef, Context c, SourcePosition p) throws Exception {
+        return session.getOptions().isSlicing() ? checkSliced(subRef, supRef, c, p)
+                : check(subRef, supRef, c, p, false);
+    }
+
+    /**
+     * Checks the obligation with only the premises that can influence the goal, checking it again with all of them if
+     * it is not valid that way
+     */
+    private Status checkSliced(Predicate subRef, Predicate supRef, Context c, SourcePosition p) throws Exception {
+        PremiseSlicer slicer = session.getPremiseSlicer();
+        Predicate sliced = slicer.slice(subRef, supRef);
+        if (sliced != subRef) {
+            try {
+                if (check(sliced, supRef, c, p, true).equals(Status.UNSATISFIABLE))
+                    return Status.UNSATISFIABLE;
+            } catch (UnknownResultError e) {
+                // decided below with all the premises
+            }
+            slicer.recordFallback();
+        }
+        return check(subRef, supRef, c, p, false);
+    }
+
+    /**
+     * Checks the obligation on z3, throwing an UnknownResultError if z3 cannot decide it. An attempt, with only some of
+     * the premises, is checked again with all of them when it does not prove the obligation, so only its proof decides
+     * the obligation.
+     */
+    private Status check(Predicate subRef, Predicate supRef, Context c, SourcePosition p, boolean attempt)
+            throws Exception {
+        if (session.isDeadlineExceeded())
+            throw new UnknownResultError("verification deadline exceeded", "verification deadline exceeded");
+        FloatingPointEncoding encoding = session.getFloatingPointEncoder().select(method);
+        try {
+            if (session.getOptions().isIncremental())
+                return checkIncremental(subRef, supRef, c, p, encoding, attempt);
+            return check(Predicate.createConjunction(subRef, supRef.negate()), c, p, encoding, attempt);
+        } catch (UnknownResultError e) {
+            // a query that is still undecided after the portfolio threshold is raced on other configurations
+            if (session.getOptions().getPortfolioThreshold() <= 0 || session.isDeadlineExceeded())
+                throw e;
+            Predicate toVerify = Predicate.createConjunction(subRef, supRef.negate());
+            SolverPortfolio.Result r = session.getPortfolio().race(toVerify, c, encoding);
+            return decide(toVerify, c, p, r.approximatesFloatingPoint, r.usesFloatingPoint, r.status, r.reasonUnknown,
+                    attempt);
+        }
+    }
+
+    private Status check(Predicate toVerify, Context c, SourcePosition p, FloatingPointEncoding encoding,
+            boolean attempt) throws Exception {
+        Expression exp = toVerify.getExpression();
+        boolean stringTheory = session.getStringAbstraction().useTheory(List.of(exp), c);
+        String logic = session.getOptions().isLogicSolvers()
+                ? session.getLogicClassifier().classify(List.of(exp), c, encoding, stringTheory) : null;
+        TranslatorToZ3 tz3;
+        Status s;
+        try (PooledContext pc = session.getContextPool().borrow()) {
+            tz3 = new TranslatorToZ3(c, pc, encoding, stringTheory);
+            // com.microsoft.z3.Expr
+            Expr<?> e = tz3.withStringAxioms(exp.eval(tz3));
+            long start = System.nanoTime();
+            s = solve(tz3, e, pc.getZ3(), logic);
+            dump(pc.getZ3(), e, p, s, System.nanoTime() - start);
+        }
+        return decide(toVerify, c, p, tz3.approximatesFloatingPoint(), tz3.usesFloatingPoint(), s,
+                tz3.getReasonUnknown(), attempt);
+    }
+
+    /**
+     * Checks the expression on the solver of its logic, and again on the general solver if that one fails or gives up
+     * for reasons other than the limits of the check
+     */
+    private Status solve(TranslatorToZ3 tz3, Expr<?> e, com.microsoft.z3.Context z3, String logic) throws Exception {
+        LogicClassifier classifier = session.getLogicClassifier();
+        if (logic != null) {
+            long start = System.nanoTime();
+            try (BackendSolver bs = session.getBackend().mkSolver(z3, logic)) {
+                session.setSolverLimits(bs);
+                Status s = tz3.verifyExpression(e, bs);
+                if (!s.equals(Status.UNKNOWN) || LogicClassifier.isLimit(tz3.getReasonUnknown())) {
+                    classifier.record(logic, System.nanoTime() - start);
+                    return s;
+                }
+            } catch (Z3Exception | IllegalStateException ex) {
+                // the solver of the logic rejected the query, the general one may not
+            }
+            classifier.recordFallback();
+        }
+        long start = System.nanoTime();
+        try (BackendSolver bs = session.getBackend().mkSolver(z3)) {
+            session.setSolverLimits(bs);
+            Status s = tz3.verifyExpression(e, bs);
+            classifier.record(null, System.nanoTime() - start);
+            return s;
+        }
+    }
+
+    /**
+     * Records the encoding that decided an obligation with floating point terms. An obligation that could not be proved
+     * over reals is checked again with IEEE 754 if the encoding of its method falls back to it. An attempt that does
+     * not prove the obligation decides nothing, so it neither falls back nor is recorded.
+     */
+    private Status decide(Predicate toVerify, Context c, SourcePosition p, boolean approximatesFloatingPoint,
+            boolean usesFloatingPoint, Status s, String reasonUnknown, boolean attempt) throws Exception {
+        FloatingPointEncoder fpe = session.getFloatingPointEncoder();
+        if (attempt && !s.equals(Status.UNSATISFIABLE))
+            return known(s, reasonUnknown);
+        if (approximatesFloatingPoint) {
+            if (!s.equals(Status.UNSATISFIABLE) && fpe.fallBack(method))
+                return check(toVerify, c, p, FloatingPointEncoding.IEEE, false);
+            fpe.record(p, method, FloatingPointEncoding.REAL, s);
+        } else if (usesFloatingPoint)
+            fpe.record(p, method, FloatingPointEncoding.IEEE, s);
+        return known(s, reasonUnknown);
+    }
+
+    private void dump(com.microsoft.z3.Context z3, Expr<?> e, SourcePosition p, Status s, long nanos) {
+        QueryDump dump = session.getQueryDump();
+        if (dump != null)
+            dump.write(z3, e, p, s, nanos);
+    }
+
+    /**
+     * Checks the obligation on the persistent solver, asserting each conjunct of the premises separately so that the
+     * following obligations can reuse them
+     */
+    private Status checkIncremental(Predicate subRef, Predicate supRef, Context c, SourcePosition p,
+            FloatingPointEncoding encoding, boolean attempt) throws Exception {
+        IncrementalSolver is = session.getIncrementalSolver();
+        synchronized (is) {
+            boolean stringTheory = session.getStringAbstraction()
+                    .useTheory(List.of(subRef.getExpression(), supRef.getExpression()), c);
+            TranslatorToZ3 tz3 = new TranslatorToZ3(c, is.getContext(), encoding, stringTheory);
+            List<Expr<?>> premises = new ArrayList<>();
+            for (Expression e : subRef.getConjuncts())
+                premises.add(e.eval(tz3));
+            Expr<?> goal = tz3.withStringAxioms(supRef.negate().getExpression().eval(tz3));
+            com.microsoft.z3.Context z3 = is.getContext().getZ3();
+            boolean fp = tz3.usesFloatingPoint();
+            // the whole query is only needed when it is checked on a fresh solver or dumped
+            Expr<?> e = goal;
+            if (fp || session.getQueryDump() != null)
+                for (Expr<?> pr : premises)
+                    e = tz3.makeAnd(pr, e);
+            Status s;
+            long start = System.nanoTime();
+            if (fp)
+                try (BackendSolver bs = session.getBackend().mkSolver(z3)) {
+                    session.setSolverLimits(bs);
+                    s = tz3.verifyExpression(e, bs);
+                }
+            else
+                s = is.check(premises, goal);
+            dump(z3, e, p, s, System.nanoTime() - start);
+            return decide(Predicate.createConjunction(subRef, supRef.negate()), c, p, tz3.approximatesFloatingPoint(),
+                    tz3.usesFloatingPoint(), s, fp ? tz3.getReasonUnknown() : is.getReasonUnknown(), attempt);
+        }
+    }
+
+    private static Status known(Status s, String reasonUnknown) throws UnknownResultError {
+        if (s.equals(Status.UNKNOWN))
+            throw new UnknownResultError(reasonUnknown, reasonUnknown);
+        return s;
+    }
 }
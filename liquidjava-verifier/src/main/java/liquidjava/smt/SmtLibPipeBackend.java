@@ -0,0 +1,362 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Status;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the queries as SMT-LIB2 to a long-running solver process, such as {@code z3 -in -smt2}, that reads commands
+ * from its standard input and answers them on its standard output. The process runs with its own memory limits and can
+ * be any solver that supports {@code check-sat-assuming}.
+ *
+ * <p>
+ * The process has a single assertion stack, which the solvers of the backend take turns on: each solver keeps the
+ * commands it has sent, and sends them again after a {@code (reset)} when another solver has used the process in the
+ * meantime. A solver that checks one query and is closed only pays for its own commands.
+ */
+public class SmtLibPipeBackend implements SolverBackend {
+
+    // the largest timeout z3 accepts, which means no timeout
+    private static final long NO_TIMEOUT = 4294967295L;
+    private static final String PRODUCE_UNSAT_CORES = "(set-option :produce-unsat-cores true)";
+
+    private final List<String> command;
+    private Process process;
+    private Writer in;
+    private BufferedReader out;
+    private PipeSolver owner;
+    // whether the process has no assertions or options set since it started
+    private boolean clean;
+    private long timeout;
+    private long rlimit;
+
+    private int starts;
+    private int checks;
+    private int replays;
+    private long commands;
+
+    /**
+     * @param command
+     *            the solver executable followed by its arguments
+     */
+    public SmtLibPipeBackend(List<String> command) {
+        this.command = command;
+    }
+
+    @Override
+    public BackendSolver mkSolver(com.microsoft.z3.Context z3, String logic) {
+        return new PipeSolver(z3, logic);
+    }
+
+    /** Sends a command of the solver, first sending again its previous ones if another solver used the process */
+    private void send(PipeSolver s, String cmd) throws IOException {
+        own(s);
+        write(cmd);
+    }
+
+    private void own(PipeSolver s) throws IOException {
+        if (process == null || !process.isAlive())
+            start();
+        else if (owner == s)
+            return;
+        else if (!clean) {
+            write("(reset)");
+            timeout = 0;
+            rlimit = 0;
+        }
+        owner = s;
+        clean = false;
+        if (s.owned && !s.log.isEmpty())
+            replays++;
+        s.owned = true;
+        for (String c : s.log)
+            write(c);
+    }
+
+    private void start() throws IOException {
+        if (process != null)
+            process.destroyForcibly();
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        process = pb.start();
+        in = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        owner = null;
+        clean = true;
+        timeout = 0;
+        rlimit = 0;
+        starts++;
+    }
+
+    private void write(String cmd) throws IOException {
+        in.write(cmd);
+        in.write('\n');
+        commands++;
+    }
+
+    private synchronized Status check(PipeSolver s, BoolExpr[] assumptions) {
+        try {
+            own(s);
+            if (s.timeout != timeout) {
+                write("(set-option :timeout " + (s.timeout > 0 ? Math.min(s.timeout, NO_TIMEOUT) : NO_TIMEOUT) + ")");
+                timeout = s.timeout;
+            }
+            if (s.rlimit != rlimit) {
+                write("(set-option :rlimit " + s.rlimit + ")");
+                rlimit = s.rlimit;
+            }
+            if (assumptions.length == 0)
+                write("(check-sat)");
+            else
+                write("(check-sat-assuming ("
+                        + Arrays.stream(assumptions).map(BoolExpr::toString).collect(Collectors.joining(" ")) + "))");
+            in.flush();
+            checks++;
+            String answer = readAnswer();
+            switch (answer) {
+            case "sat":
+                return Status.SATISFIABLE;
+            case "unsat":
+                return Status.UNSATISFIABLE;
+            default:
+                write("(get-info :reason-unknown)");
+                in.flush();
+                s.reasonUnknown = readReasonUnknown();
+                return Status.UNKNOWN;
+            }
+        } catch (IOException e) {
+            owner = null;
+            throw new IllegalStateException("Could not talk to the solver process " + command + ": " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /** Reads the answer of a check, failing if the solver reported errors on the previous commands */
+    private String readAnswer() throws IOException {
+        List<String> errors = new ArrayList<>();
+        String line;
+        while ((line = out.readLine()) != null) {
+            line = line.trim();
+            if (line.equals("sat") || line.equals("unsat") || line.equals("unknown")) {
+                if (!errors.isEmpty()) {
+                    // the answer may not be about the query that was meant
+                    owner = null;
+                    throw new IllegalStateException("The solver process reported " + String.join(" ", errors));
+                }
+                return line;
+            }
+            if (!line.isEmpty())
+                errors.add(line);
+        }
+        process = null;
+        throw new IOException("the process exited" + (errors.isEmpty() ? "" : " after " + String.join(" ", errors)));
+    }
+
+    private synchronized BoolExpr[] getUnsatCore(PipeSolver s) {
+        if (owner != s)
+            throw new IllegalStateException("The solver process has moved on from the last check of the solver");
+        try {
+            write("(get-unsat-core)");
+            in.flush();
+            // (premise!0 goal!1), possibly over several lines
+            StringBuilder sb = new StringBuilder();
+            int depth = 0;
+            do {
+                String line = out.readLine();
+                if (line == null)
+                    throw new IOException("the process exited");
+                sb.append(line).append(' ');
+                for (char ch : line.toCharArray())
+                    depth += ch == '(' ? 1 : ch == ')' ? -1 : 0;
+            } while (depth > 0);
+            String core = sb.toString().trim();
+            if (!core.startsWith("(") || core.startsWith("(error"))
+                throw new IllegalStateException("The solver process reported " + core);
+            String names = core.substring(1, core.length() - 1).trim();
+            return names.isEmpty() ? new BoolExpr[0]
+                    : Arrays.stream(names.split("\\s+")).map(s.z3::mkBoolConst).toArray(BoolExpr[]::new);
+        } catch (IOException e) {
+            owner = null;
+            throw new IllegalStateException("Could not talk to the solver process " + command + ": " + e.getMessage(),
+                    e);
+        }
+    }
+
+    private String readReasonUnknown() throws IOException {
+        String line = out.readLine();
+        if (line == null)
+            throw new IOException("the process exited");
+        // (:reason-unknown "timeout")
+        int start = line.indexOf('"');
+        int end = line.lastIndexOf('"');
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.trim();
+    }
+
+    @Override
+    public synchronized String report() {
+        return String.format("Solver process %s: %d starts, %d checks, %d commands sent, %d replays after a reset",
+                String.join(" ", command), starts, checks, commands, replays);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process == null)
+            return;
+        try {
+            write("(exit)");
+            in.flush();
+            in.close();
+            if (!process.waitFor(1, TimeUnit.SECONDS))
+                process.destroyForcibly();
+        } catch (IOException e) {
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        process = null;
+    }
+
+    private class PipeSolver implements BackendSolver {
+        private final com.microsoft.z3.Context z3;
+        // commands of the current assertion stack, in the order they were sent
+        private final List<String> log = new ArrayList<>();
+        // size of the log when each open scope was pushed
+        private final Deque<Integer> scopes = new ArrayDeque<>();
+        private final Set<String> declarations = new HashSet<>();
+        private long timeout;
+        private long rlimit;
+        private String reasonUnknown;
+        private boolean owned;
+        // the first command after a reset, null for the general solver
+        private final String logic;
+        private boolean unsatCores;
+
+        PipeSolver(com.microsoft.z3.Context z3, String logic) {
+            this.z3 = z3;
+            this.logic = logic == null ? null : "(set-logic " + logic + ")";
+            if (logic != null)
+                log.add(this.logic);
+        }
+
+        @Override
+        public void setLimits(long timeout, long rlimit) {
+            this.timeout = timeout;
+            this.rlimit = rlimit;
+        }
+
+        /** Declares the symbols of the assertion that are not declared yet and asserts it */
+        @Override
+        public void add(BoolExpr assertion) {
+            String smt = z3.benchmarkToSMTString("", "", "unknown", "", new BoolExpr[0], assertion);
+            for (String c : SmtLibReader.commands(smt))
+                if (c.startsWith("(assert")
+                        || (c.startsWith("(declare-") || c.startsWith("(define-")) && declarations.add(c))
+                    append(c);
+        }
+
+        @Override
+        public void push() {
+            scopes.push(log.size());
+            append("(push 1)");
+        }
+
+        @Override
+        public void pop() {
+            synchronized (SmtLibPipeBackend.this) {
+                int mark = scopes.pop();
+                log.subList(mark, log.size()).clear();
+                declarations.clear();
+                for (String c : log)
+                    if (c.startsWith("(declare-") || c.startsWith("(define-"))
+                        declarations.add(c);
+                if (owner == this)
+                    sendOrRelease("(pop 1)");
+            }
+        }
+
+        @Override
+        public void reset() {
+            synchronized (SmtLibPipeBackend.this) {
+                log.clear();
+                scopes.clear();
+                declarations.clear();
+                if (unsatCores)
+                    log.add(PRODUCE_UNSAT_CORES);
+                if (logic != null)
+                    log.add(logic);
+                if (owner == this)
+                    // the next solver to use the process resets it
+                    owner = null;
+            }
+        }
+
+        private void append(String cmd) {
+            synchronized (SmtLibPipeBackend.this) {
+                if (owner == this)
+                    sendOrRelease(cmd);
+                // otherwise it is sent with the rest of the log when the solver next uses the process
+                log.add(cmd);
+            }
+        }
+
+        private void sendOrRelease(String cmd) {
+            try {
+                send(this, cmd);
+            } catch (IOException e) {
+                // sent again from the log on the next check
+                owner = null;
+            }
+        }
+
+        @Override
+        public Status check(BoolExpr... assumptions) {
+            return SmtLibPipeBackend.this.check(this, assumptions);
+        }
+
+        @Override
+        public String getReasonUnknown() {
+            return reasonUnknown;
+        }
+
+        @Override
+        public void produceUnsatCores() {
+            synchronized (SmtLibPipeBackend.this) {
+                if (unsatCores)
+                    return;
+                unsatCores = true;
+                // an option of the start mode, which ends with the first logic or assertion
+                log.add(0, PRODUCE_UNSAT_CORES);
+                if (owner == this)
+                    owner = null;
+            }
+        }
+
+        @Override
+        public BoolExpr[] getUnsatCore() {
+            return SmtLibPipeBackend.this.getUnsatCore(this);
+        }
+
+        @Override
+        public void close() {
+            synchronized (SmtLibPipeBackend.this) {
+                // the next solver to use the process resets it
+                log.clear();
+            }
+        }
+    }
+}
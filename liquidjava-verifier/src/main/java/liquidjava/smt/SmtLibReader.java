@@ -0,0 +1,74 @@
+package liquidjava.smt;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Splits SMT-LIB2 text into its top-level commands, leaving out comments */
+public class SmtLibReader {
+
+    private final Reader in;
+
+    public SmtLibReader(Reader in) {
+        this.in = in;
+    }
+
+    /** The commands of the text, in order */
+    public static List<String> commands(String smt) {
+        SmtLibReader r = new SmtLibReader(new StringReader(smt));
+        List<String> l = new ArrayList<>();
+        try {
+            String c;
+            while ((c = r.next()) != null)
+                l.add(c);
+        } catch (IOException e) {
+            // a string reader does not fail
+        }
+        return l;
+    }
+
+    /**
+     * Reads the next command, blocking until it is complete
+     *
+     * @return the command, or null at the end of the input
+     *
+     * @throws IOException
+     */
+    public String next() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        int ch;
+        while ((ch = in.read()) != -1) {
+            char c = (char) ch;
+            if (c == ';') {
+                // comment until the end of the line
+                while ((ch = in.read()) != -1 && ch != '\n')
+                    ;
+                c = ' ';
+            }
+            if (depth == 0 && c != '(')
+                continue;
+            if (Character.isWhitespace(c)) {
+                if (sb.charAt(sb.length() - 1) != ' ')
+                    sb.append(' ');
+                continue;
+            }
+            sb.append(c);
+            if (c == '|' || c == '"') {
+                // quoted symbols and string literals are kept as they are, parentheses included
+                int q;
+                while ((q = in.read()) != -1) {
+                    sb.append((char) q);
+                    if (q == c)
+                        break;
+                }
+            } else if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return sb.toString();
+        }
+        return null;
+    }
+}
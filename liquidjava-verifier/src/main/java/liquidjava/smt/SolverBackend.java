@@ -0,0 +1,30 @@
+package liquidjava.smt;
+
+/**
+ * Decides the queries translated by {@link TranslatorToZ3}. Queries are always built as terms of a z3 context, which
+ * the in-process backend solves directly and other backends send to an external solver as SMT-LIB2.
+ */
+public interface SolverBackend extends AutoCloseable {
+
+    /** Creates an empty general solver for queries built on the given context */
+    default BackendSolver mkSolver(com.microsoft.z3.Context z3) {
+        return mkSolver(z3, null);
+    }
+
+    /**
+     * Creates an empty solver for queries built on the given context
+     *
+     * @param z3
+     * @param logic
+     *            SMT-LIB logic of the queries, for a solver specialized for it, or null for the general solver
+     *
+     * @return
+     */
+    BackendSolver mkSolver(com.microsoft.z3.Context z3, String logic);
+
+    /** Statistics of the backend, null if it has none */
+    String report();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,234 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Params;
+import com.microsoft.z3.Solver;
+import com.microsoft.z3.Status;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import liquidjava.processor.context.Context;
+import liquidjava.rj_language.Predicate;
+
+/**
+ * Races a query that the solver could not decide within the portfolio threshold under several solver configurations.
+ * Each configuration runs on its own thread with its own z3 context, the first definitive answer wins and the others
+ * are interrupted until they stop.
+ */
+public class SolverPortfolio implements AutoCloseable {
+
+    /** Solver configurations of the portfolio */
+    enum Strategy {
+        DEFAULT("default") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                return z3.mkSolver();
+            }
+        },
+        SEED("random-seed-7") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                Solver s = z3.mkSolver();
+                Params p = z3.mkParams();
+                p.add("random_seed", 7);
+                s.setParameters(p);
+                return s;
+            }
+        },
+        SIMPLEX("arith-solver-2") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                Solver s = z3.mkSolver();
+                Params p = z3.mkParams();
+                p.add("arith.solver", 2);
+                s.setParameters(p);
+                return s;
+            }
+        },
+        PREPROCESS("simplify-solve-eqs-smt") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                return z3.mkSolver(z3.andThen(z3.mkTactic("simplify"), z3.mkTactic("solve-eqs"), z3.mkTactic("smt")));
+            }
+        },
+        NLSAT("qfnra-nlsat") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                return z3.mkTactic("qfnra-nlsat").getSolver();
+            }
+        },
+        FP("qffp") {
+            Solver mkSolver(com.microsoft.z3.Context z3) {
+                return z3.mkTactic("qffp").getSolver();
+            }
+        };
+
+        private final String name;
+
+        Strategy(String name) {
+            this.name = name;
+        }
+
+        abstract Solver mkSolver(com.microsoft.z3.Context z3);
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** Answer of a configuration, with how its translation encoded the floating point terms of the query */
+    static class Result {
+        final Strategy strategy;
+        final Status status;
+        final String reasonUnknown;
+        final boolean approximatesFloatingPoint;
+        final boolean usesFloatingPoint;
+
+        Result(Strategy strategy, Status status, String reasonUnknown, TranslatorToZ3 tz3) {
+            this.strategy = strategy;
+            this.status = status;
+            this.reasonUnknown = reasonUnknown;
+            this.approximatesFloatingPoint = tz3.approximatesFloatingPoint();
+            this.usesFloatingPoint = tz3.usesFloatingPoint();
+        }
+    }
+
+    // how long to wait for an interrupted configuration before interrupting it again
+    private static final long INTERRUPT_INTERVAL_MS = 20;
+
+    private final VerificationSession session;
+    private ExecutorService executor;
+
+    private int races;
+    private int undecided;
+    private final Map<Strategy, Integer> wins = new LinkedHashMap<>();
+
+    SolverPortfolio(VerificationSession session) {
+        this.session = session;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null)
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "liquidjava-portfolio");
+                t.setDaemon(true);
+                return t;
+            });
+        return executor;
+    }
+
+    /**
+     * Checks the satisfiability of the predicate with all the configurations of the portfolio at the same time
+     *
+     * @param toVerify
+     * @param c
+     * @param encoding
+     *            the encoding of the floating point terms, either IEEE or REAL
+     *
+     * @return the result of the first configuration to decide it, or an unknown one if none does
+     */
+    Result race(Predicate toVerify, Context c, FloatingPointEncoding encoding) throws Exception {
+        Strategy[] strategies = Strategy.values();
+        ExecutorCompletionService<Result> ecs = new ExecutorCompletionService<>(getExecutor());
+        List<PooledContext> contexts = new ArrayList<>();
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Strategy st : strategies) {
+            PooledContext pc = session.getContextPool().borrow();
+            contexts.add(pc);
+            futures.add(ecs.submit(() -> run(st, pc, toVerify, c, encoding)));
+        }
+
+        Result winner = null;
+        Exception failure = null;
+        Result unknown = null;
+        try {
+            for (int i = 0; i < strategies.length && winner == null; i++) {
+                try {
+                    Result r = ecs.take().get();
+                    if (r.status.equals(Status.UNKNOWN))
+                        unknown = r;
+                    else
+                        winner = r;
+                } catch (ExecutionException e) {
+                    if (failure == null && e.getCause() instanceof Exception)
+                        failure = (Exception) e.getCause();
+                }
+            }
+        } finally {
+            cancel(futures, contexts);
+        }
+
+        record(winner);
+        if (winner != null)
+            return winner;
+        if (unknown == null)
+            throw failure;
+        return unknown;
+    }
+
+    /**
+     * Interrupts the configurations still running and waits for them to stop, since the contexts can only be given back
+     * once their solvers stopped. A configuration may not have started its check when it is first interrupted, which
+     * then does not stop it, so the interrupt is sent again until it returns.
+     */
+    private void cancel(List<Future<Result>> futures, List<PooledContext> contexts) throws InterruptedException {
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Result> f = futures.get(i);
+            while (!f.isDone()) {
+                contexts.get(i).interrupt();
+                try {
+                    f.get(INTERRUPT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    // already accounted for, or still running
+                }
+            }
+        }
+        for (PooledContext pc : contexts)
+            pc.close();
+    }
+
+    private Result run(Strategy st, PooledContext pc, Predicate toVerify, Context c, FloatingPointEncoding encoding)
+            throws Exception {
+        com.microsoft.z3.Context z3 = pc.getZ3();
+        TranslatorToZ3 tz3 = new TranslatorToZ3(c, pc, encoding,
+                session.getStringAbstraction().needsTheory(List.of(toVerify.getExpression()), c));
+        Expr<?> e = tz3.withStringAxioms(toVerify.getExpression().eval(tz3));
+        Solver s = st.mkSolver(z3);
+        Params limits = session.getSolverLimits(z3, 0);
+        if (limits != null)
+            s.setParameters(limits);
+        // an array of the subclass, as a generic varargs array would be an unchecked creation
+        s.add(new BoolExpr[] { (BoolExpr) e });
+        // a losing configuration interrupted before its check started
+        if (pc.isInterrupted())
+            return new Result(st, Status.UNKNOWN, "canceled", tz3);
+        Status status = s.check();
+        return new Result(st, status, status.equals(Status.UNKNOWN) ? s.getReasonUnknown() : null, tz3);
+    }
+
+    private synchronized void record(Result winner) {
+        races++;
+        if (winner == null)
+            undecided++;
+        else
+            wins.merge(winner.strategy, 1, Integer::sum);
+    }
+
+    public synchronized String report() {
+        return String.format("Solver portfolio: %d races, %d undecided, wins: %s", races, undecided, wins.isEmpty()
+                ? "none"
+                : wins.entrySet().stream().map(e -> e.getKey() + " " + e.getValue()).collect(Collectors.joining(", ")));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+}
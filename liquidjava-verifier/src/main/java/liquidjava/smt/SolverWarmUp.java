@@ -0,0 +1,94 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Status;
+
+/**
+ * Gets the solver ready while the launcher builds the model of the sources: loads the z3 native libraries, creates the
+ * first context of the pool and runs a trivial check on the backend, which also starts the solver process of a pipe
+ * backend. The context then goes back to the pool for the first query. Also records the time of each startup phase.
+ */
+public class SolverWarmUp {
+
+    private final VerificationSession session;
+    private Thread thread;
+    private long contextNanos;
+    private long checkNanos;
+    private long modelNanos;
+    private long waitNanos;
+    private String failure;
+
+    SolverWarmUp(VerificationSession session) {
+        this.session = session;
+    }
+
+    /** Starts the warm-up in the background, if it was not started yet */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this::run, "liquidjava-solver-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            long start = System.nanoTime();
+            try (PooledContext pc = session.getContextPool().borrow()) {
+                long created = System.nanoTime();
+                com.microsoft.z3.Context z3 = pc.getZ3();
+                try (BackendSolver s = session.getBackend().mkSolver(z3)) {
+                    BoolExpr x = z3.mkBoolConst("warm!up");
+                    s.add(z3.mkAnd(x, z3.mkNot(x)));
+                    if (!s.check().equals(Status.UNSATISFIABLE))
+                        throw new IllegalStateException("the solver did not refute a contradiction");
+                }
+                synchronized (this) {
+                    contextNanos = created - start;
+                    checkNanos = System.nanoTime() - created;
+                }
+            }
+        } catch (RuntimeException | LinkageError e) {
+            // the queries will fail with the same error, reported where they are checked
+            synchronized (this) {
+                failure = e.getMessage();
+            }
+        }
+    }
+
+    /** Records the time the launcher took to build the model of the sources */
+    public synchronized void recordModelBuild(long nanos) {
+        modelNanos += nanos;
+    }
+
+    /** Waits for the warm-up to finish, so that the first query reuses its context */
+    public void await() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t == null)
+            return;
+        long start = System.nanoTime();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            waitNanos += System.nanoTime() - start;
+        }
+    }
+
+    public synchronized String report() {
+        if (thread == null)
+            return String.format("Startup: model built in %.1f ms, no solver warm-up", modelNanos / 1e6);
+        if (failure != null)
+            return String.format("Startup: model built in %.1f ms, solver warm-up failed: %s", modelNanos / 1e6,
+                    failure);
+        return String.format(
+                "Startup: model built in %.1f ms, solver warmed up alongside in %.1f ms (natives and first context %.1f ms, first check %.1f ms), %.1f ms waited for it",
+                modelNanos / 1e6, (contextNanos + checkNanos) / 1e6, contextNanos / 1e6, checkNanos / 1e6,
+                waitNanos / 1e6);
+    }
+}
@@ -0,0 +1,112 @@
+package liquidjava.smt;
+
+import java.util.List;
+import liquidjava.processor.context.Context;
+import liquidjava.processor.context.GhostFunction;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.FunctionInvocation;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.Ite;
+import liquidjava.rj_language.ast.LiteralString;
+import liquidjava.rj_language.ast.Var;
+import spoon.reflect.reference.CtTypeReference;
+
+/**
+ * Decides how the strings of a query are translated. When the query only compares strings for equality, strings are an
+ * uninterpreted sort and each literal a constant of that sort, asserted distinct from the other literals of the query,
+ * which z3 decides without loading its string solver. Queries that apply other operators to strings, such as the
+ * concatenation, are translated with the string theory.
+ */
+public class StringAbstraction {
+
+    private final boolean enabled;
+    private int uninterpreted;
+    private int theory;
+
+    /**
+     * @param enabled
+     *            false to translate every query with the string theory
+     */
+    StringAbstraction(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Whether the query has to be translated with the string theory, counting the queries with strings
+     *
+     * @param expressions
+     *            the formulas of the query
+     * @param c
+     *            context where the variables and ghosts of the query are declared
+     *
+     * @return
+     */
+    public boolean useTheory(List<Expression> expressions, Context c) {
+        boolean useTheory = needsTheory(expressions, c);
+        if (expressions.stream().anyMatch(e -> hasStrings(e, c)))
+            record(useTheory);
+        return useTheory;
+    }
+
+    /** Whether the query has to be translated with the string theory, without counting it */
+    public boolean needsTheory(List<Expression> expressions, Context c) {
+        return !enabled || expressions.stream().anyMatch(e -> operatesOnStrings(e, c));
+    }
+
+    private synchronized void record(boolean useTheory) {
+        if (useTheory)
+            theory++;
+        else
+            uninterpreted++;
+    }
+
+    /** Whether the expression applies an operator other than equality to strings */
+    private static boolean operatesOnStrings(Expression e, Context c) {
+        if (e instanceof BinaryExpression) {
+            BinaryExpression b = (BinaryExpression) e;
+            String op = b.getOperator();
+            if (!op.equals("==") && !op.equals("!=")
+                    && (isString(b.getFirstOperand(), c) || isString(b.getSecondOperand(), c)))
+                return true;
+        }
+        for (Expression child : e.getChildren())
+            if (operatesOnStrings(child, c))
+                return true;
+        return false;
+    }
+
+    private static boolean hasStrings(Expression e, Context c) {
+        if (isString(e, c))
+            return true;
+        for (Expression child : e.getChildren())
+            if (hasStrings(child, c))
+                return true;
+        return false;
+    }
+
+    private static boolean isString(Expression e, Context c) {
+        if (e instanceof LiteralString)
+            return true;
+        if (e instanceof GroupExpression)
+            return isString(((GroupExpression) e).getExpression(), c);
+        if (e instanceof Ite)
+            return isString(((Ite) e).getThen(), c);
+        if (e instanceof Var)
+            return isStringType(c.getVariableType(((Var) e).getName()));
+        if (e instanceof FunctionInvocation) {
+            GhostFunction gh = TranslatorContextToZ3.findGhost(c, ((FunctionInvocation) e).getName());
+            return gh != null && isStringType(gh.getReturnType());
+        }
+        return false;
+    }
+
+    private static boolean isStringType(CtTypeReference<?> t) {
+        return t != null && Z3SymbolTable.isString(t.getQualifiedName());
+    }
+
+    public synchronized String report() {
+        return String.format("String encoding: %d queries with uninterpreted strings, %d with the string theory",
+                uninterpreted, theory);
+    }
+}
@@ -0,0 +1,326 @@
+package liquidjava.smt;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.ast.BinaryExpression;
+import liquidjava.rj_language.ast.Expression;
+import liquidjava.rj_language.ast.GroupExpression;
+import liquidjava.rj_language.ast.Ite;
+import liquidjava.rj_language.ast.LiteralBoolean;
+import liquidjava.rj_language.ast.LiteralInt;
+import liquidjava.rj_language.ast.LiteralReal;
+import liquidjava.rj_language.ast.UnaryExpression;
+import liquidjava.utils.Utils;
+
+/**
+ * Proves obligations that are valid for syntactic reasons, so that they do not need to be sent to z3: goals that fold
+ * to true, goals that are premises, and comparisons of a term with a constant implied by the bounds the premises give
+ * to the same term. It never refutes an obligation, anything it cannot prove is left to the solver.
+ */
+public class SyntacticProver {
+
+    private int queries;
+    private int proved;
+
+    /**
+     * Whether subRef implies supRef syntactically
+     *
+     * @param subRef
+     * @param supRef
+     *
+     * @return true only if the obligation is valid, false when it could not be decided
+     */
+    public boolean proves(Predicate subRef, Predicate supRef) {
+        List<Expression> premises = new ArrayList<>();
+        for (Expression e : subRef.getConjuncts())
+            premises.add(ungroup(e));
+        boolean r = provesAll(premises, supRef.getConjuncts());
+        record(r);
+        return r;
+    }
+
+    private synchronized void record(boolean r) {
+        queries++;
+        if (r)
+            proved++;
+    }
+
+    private boolean provesAll(List<Expression> premises, List<Expression> goals) {
+        for (Expression p : premises)
+            if (Boolean.FALSE.equals(fold(p)))
+                return true;
+        for (Expression g : goals)
+            if (!provesGoal(premises, ungroup(g)))
+                return false;
+        return true;
+    }
+
+    private boolean provesGoal(List<Expression> premises, Expression goal) {
+        Object v = fold(goal);
+        if (v != null)
+            return Boolean.TRUE.equals(v);
+        if (premises.contains(goal))
+            return true;
+        if (!(goal instanceof BinaryExpression))
+            return false;
+
+        BinaryExpression be = (BinaryExpression) goal;
+        Expression left = be.getFirstOperand();
+        Expression right = be.getSecondOperand();
+        switch (be.getOperator()) {
+        case Utils.AND:
+            return provesGoal(premises, left) && provesGoal(premises, right);
+        case Utils.OR:
+            return provesGoal(premises, left) || provesGoal(premises, right);
+        case "-->":
+            List<Expression> extended = new ArrayList<>(premises);
+            for (Expression e : new Predicate(left).getConjuncts())
+                extended.add(ungroup(e));
+            return provesAll(extended, List.of(right));
+        default: // no reflexivity, x == x does not hold for a floating point x that is NaN
+            Comparison c = Comparison.of(be);
+            return c != null && impliedByBounds(premises, c);
+        }
+    }
+
+    /** Whether the comparison of a term with a constant follows from the comparisons of that term in the premises */
+    private boolean impliedByBounds(List<Expression> premises, Comparison goal) {
+        for (Expression p : premises) {
+            if (!(p instanceof BinaryExpression))
+                continue;
+            Comparison c = Comparison.of((BinaryExpression) p);
+            if (c != null && c.term.equals(goal.term) && c.implies(goal))
+                return true;
+        }
+        return false;
+    }
+
+    /** A comparison between a term and a numeric constant, written with the term on the left */
+    private static class Comparison {
+        final Expression term;
+        final String op;
+        final BigDecimal value;
+
+        private Comparison(Expression term, String op, BigDecimal value) {
+            this.term = term;
+            this.op = op;
+            this.value = value;
+        }
+
+        static Comparison of(BinaryExpression be) {
+            String op = be.getOperator();
+            if (!be.isBooleanOperation())
+                return null;
+            BigDecimal r = toDecimal(fold(be.getSecondOperand()));
+            if (r != null && fold(be.getFirstOperand()) == null)
+                return new Comparison(be.getFirstOperand(), op, r);
+            BigDecimal l = toDecimal(fold(be.getFirstOperand()));
+            if (l != null && fold(be.getSecondOperand()) == null)
+                return new Comparison(be.getSecondOperand(), flip(op), l);
+            return null;
+        }
+
+        private static String flip(String op) {
+            switch (op) {
+            case Utils.GT:
+                return Utils.LT;
+            case Utils.GE:
+                return Utils.LE;
+            case Utils.LT:
+                return Utils.GT;
+            case Utils.LE:
+                return Utils.GE;
+            default:
+                return op;
+            }
+        }
+
+        boolean implies(Comparison goal) {
+            int cmp = value.compareTo(goal.value);
+            boolean lower = op.equals(Utils.GT) || op.equals(Utils.GE) || op.equals(Utils.EQ);
+            boolean upper = op.equals(Utils.LT) || op.equals(Utils.LE) || op.equals(Utils.EQ);
+            boolean strict = op.equals(Utils.GT) || op.equals(Utils.LT);
+            switch (goal.op) {
+            case Utils.GT:
+                return lower && (cmp > 0 || (cmp == 0 && strict));
+            case Utils.GE:
+                return lower && cmp >= 0;
+            case Utils.LT:
+                return upper && (cmp < 0 || (cmp == 0 && strict));
+            case Utils.LE:
+                return upper && cmp <= 0;
+            case Utils.EQ:
+                return op.equals(Utils.EQ) && cmp == 0;
+            case Utils.NEQ:
+                return (lower && (cmp > 0 || (cmp == 0 && strict))) || (upper && (cmp < 0 || (cmp == 0 && strict)))
+                        || (op.equals(Utils.NEQ) && cmp == 0);
+            default:
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Evaluates an expression without variables
+     *
+     * @param e
+     *
+     * @return a Boolean, Long or Double with the value of the expression, or null if it is not constant or cannot be
+     *         folded with the same semantics as in z3
+     */
+    static Object fold(Expression e) {
+        if (e instanceof GroupExpression)
+            return fold(((GroupExpression) e).getExpression());
+        if (e instanceof LiteralBoolean)
+            return e.isBooleanTrue();
+        if (e instanceof LiteralInt)
+            return (long) ((LiteralInt) e).getValue();
+        if (e instanceof LiteralReal)
+            return ((LiteralReal) e).getValue();
+        if (e instanceof UnaryExpression) {
+            UnaryExpression ue = (UnaryExpression) e;
+            Object v = fold(ue.getExpression());
+            if (ue.getOp().equals("!") && v instanceof Boolean)
+                return !(Boolean) v;
+            if (ue.getOp().equals("-") && v instanceof Long)
+                return ((Long) v) == Long.MIN_VALUE ? null : -(Long) v;
+            if (ue.getOp().equals("-") && v instanceof Double)
+                return -(Double) v;
+            return null;
+        }
+        if (e instanceof Ite) {
+            Object c = fold(((Ite) e).getCondition());
+            if (c instanceof Boolean)
+                return fold((Boolean) c ? ((Ite) e).getThen() : ((Ite) e).getElse());
+            return null;
+        }
+        if (e instanceof BinaryExpression)
+            return foldBinary((BinaryExpression) e);
+        return null;
+    }
+
+    private static Object foldBinary(BinaryExpression be) {
+        Object l = fold(be.getFirstOperand());
+        Object r = fold(be.getSecondOperand());
+        String op = be.getOperator();
+        if (l instanceof Boolean || r instanceof Boolean) {
+            Boolean a = l instanceof Boolean ? (Boolean) l : null;
+            Boolean b = r instanceof Boolean ? (Boolean) r : null;
+            switch (op) {
+            case Utils.AND:
+                if (Boolean.FALSE.equals(a) || Boolean.FALSE.equals(b))
+                    return false;
+                return a != null && b != null ? true : null;
+            case Utils.OR:
+                if (Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b))
+                    return true;
+                return a != null && b != null ? false : null;
+            case "-->":
+                if (Boolean.FALSE.equals(a) || Boolean.TRUE.equals(b))
+                    return true;
+                return a != null && b != null ? false : null;
+            case Utils.EQ:
+                return a != null && b != null ? a.equals(b) : null;
+            case Utils.NEQ:
+                return a != null && b != null ? !a.equals(b) : null;
+            default:
+                return null;
+            }
+        }
+        if (!(l instanceof Number) || !(r instanceof Number))
+            return null;
+        if (be.isBooleanOperation())
+            return compare(op, (Number) l, (Number) r);
+        if (l instanceof Long && r instanceof Long)
+            return foldInt(op, (Long) l, (Long) r);
+        return foldDouble(op, ((Number) l).doubleValue(), ((Number) r).doubleValue());
+    }
+
+    private static Object foldInt(String op, long a, long b) {
+        try {
+            switch (op) {
+            case Utils.PLUS:
+                return Math.addExact(a, b);
+            case Utils.MINUS:
+                return Math.subtractExact(a, b);
+            case Utils.MUL:
+                return Math.multiplyExact(a, b);
+            // integer division and modulo only agree with z3 for non-negative operands
+            case Utils.DIV:
+                return a >= 0 && b > 0 ? a / b : null;
+            case Utils.MOD:
+                return a >= 0 && b > 0 ? a % b : null;
+            default:
+                return null;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static Object foldDouble(String op, double a, double b) {
+        double r;
+        switch (op) {
+        case Utils.PLUS:
+            r = a + b;
+            break;
+        case Utils.MINUS:
+            r = a - b;
+            break;
+        case Utils.MUL:
+            r = a * b;
+            break;
+        case Utils.DIV:
+            r = a / b;
+            break;
+        default: // the remainder of z3 is not the one of java
+            return null;
+        }
+        return Double.isFinite(r) ? r : null;
+    }
+
+    private static Object compare(String op, Number l, Number r) {
+        BigDecimal a = toDecimal(l);
+        BigDecimal b = toDecimal(r);
+        if (a == null || b == null)
+            return null;
+        int cmp = a.compareTo(b);
+        switch (op) {
+        case Utils.EQ:
+            return cmp == 0;
+        case Utils.NEQ:
+            return cmp != 0;
+        case Utils.GT:
+            return cmp > 0;
+        case Utils.GE:
+            return cmp >= 0;
+        case Utils.LT:
+            return cmp < 0;
+        case Utils.LE:
+            return cmp <= 0;
+        default:
+            return null;
+        }
+    }
+
+    private static BigDecimal toDecimal(Object n) {
+        if (n instanceof Long)
+            return BigDecimal.valueOf((Long) n);
+        if (n instanceof Double && Double.isFinite((Double) n))
+            return new BigDecimal((Double) n);
+        return null;
+    }
+
+    /** The expression without parentheses, which do not change its meaning */
+    private static Expression ungroup(Expression e) {
+        while (e instanceof GroupExpression)
+            e = ((GroupExpression) e).getExpression();
+        return e.mapChildren(SyntacticProver::ungroup);
+    }
+
+    public synchronized String report() {
+        return String.format("Syntactic prover: %d of %d queries proved without z3", proved, queries);
+    }
+}
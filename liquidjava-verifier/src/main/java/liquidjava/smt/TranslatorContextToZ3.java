@@ -2,64 +2,54 @@ package liquidjava.smt;
 
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
-import com.microsoft.z3.FPExpr;
 import com.microsoft.z3.FuncDecl;
-import com.microsoft.z3.Sort;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 import liquidjava.processor.context.AliasWrapper;
 import liquidjava.processor.context.GhostFunction;
-import liquidjava.processor.context.GhostState;
 import liquidjava.processor.context.RefinedVariable;
 import spoon.reflect.reference.CtTypeReference;
 
+/**
+ * Declares in z3 the symbols of the verification context. Declarations are created when the translation of a query
+ * first meets a symbol, so the cost of a query depends on the symbols it uses and not on the size of the context.
+ */
 public class TranslatorContextToZ3 {
 
-    static void translateVariables(Context z3, Map<String, CtTypeReference<?>> ctx,
-            Map<String, Expr<?>> varTranslation) {
-
-        for (String name : ctx.keySet())
-            varTranslation.put(name, getExpr(z3, name, ctx.get(name)));
-
-        varTranslation.put("true", z3.mkBool(true));
-        varTranslation.put("false", z3.mkBool(false));
-    }
-
-    public static void storeVariablesSubtypes(Context z3, List<RefinedVariable> variables,
-            Map<String, List<Expr<?>>> varSuperTypes) {
-        for (RefinedVariable v : variables) {
-            if (!v.getSuperTypes().isEmpty()) {
-                ArrayList<Expr<?>> a = new ArrayList<>();
-                for (CtTypeReference<?> ctr : v.getSuperTypes())
-                    a.add(getExpr(z3, v.getName(), ctr));
-                varSuperTypes.put(v.getName(), a);
-            }
-        }
+    /**
+     * Declares a variable of the context
+     *
+     * @param z3
+     * @param name
+     * @param c
+     * @param symbols
+     *
+     * @return the constant of the variable, or null if the context has no variable with that name
+     */
+    static Expr<?> translateVariable(Context z3, String name, liquidjava.processor.context.Context c,
+            Z3SymbolTable symbols) {
+        if (name.equals("true") || name.equals("false"))
+            return z3.mkBool(name.equals("true"));
+        CtTypeReference<?> type = c.getVariableType(name);
+        return type == null ? null : symbols.getConstant(name, type.getQualifiedName());
     }
 
-    private static Expr<?> getExpr(Context z3, String name, CtTypeReference<?> type) {
-        String typeName = type.getQualifiedName();
-        if (typeName.contentEquals("int"))
-            return z3.mkIntConst(name);
-        else if (typeName.contentEquals("short"))
-            return z3.mkIntConst(name);
-        else if (typeName.contentEquals("boolean"))
-            return z3.mkBoolConst(name);
-        else if (typeName.contentEquals("long"))
-            return z3.mkRealConst(name);
-        else if (typeName.contentEquals("float")) {
-            return (FPExpr) z3.mkConst(name, z3.mkFPSort64());
-        } else if (typeName.contentEquals("double")) {
-            return (FPExpr) z3.mkConst(name, z3.mkFPSort64());
-        } else if (typeName.contentEquals("int[]")) {
-            return z3.mkArrayConst(name, z3.mkIntSort(), z3.mkIntSort());
-        } else {
-            Sort nSort = z3.mkUninterpretedSort(typeName);
-            return z3.mkConst(name, nSort);
-            // System.out.println("Add new type: "+typeName);
-        }
+    /**
+     * Declares the supertypes of a variable of the context
+     *
+     * @return a constant with the variable name for each supertype, or null if the variable has none
+     */
+    static List<Expr<?>> translateSuperTypes(String name, liquidjava.processor.context.Context c,
+            Z3SymbolTable symbols) {
+        RefinedVariable v = c.getVariableWithSupertypes(name);
+        if (v == null)
+            return null;
+        List<Expr<?>> a = new ArrayList<>();
+        for (CtTypeReference<?> ctr : v.getSuperTypes())
+            a.add(symbols.getConstant(v.getName(), ctr.getQualifiedName()));
+        return a;
     }
 
     static void addAlias(Context z3, List<AliasWrapper> alias, Map<String, AliasWrapper> aliasTranslation) {
@@ -68,66 +58,66 @@ public class TranslatorContextToZ3 {
         }
     }
 
-    public static void addGhostFunctions(Context z3, List<GhostFunction> ghosts,
-            Map<String, FuncDecl<?>> funcTranslation) {
-        addBuiltinFunctions(z3, funcTranslation);
-        if (!ghosts.isEmpty()) {
-            for (GhostFunction gh : ghosts) {
-                addGhostFunction(z3, gh, funcTranslation);
-            }
-        }
+    /**
+     * The ghost the translation uses for a name: ghost states take precedence over ghost functions and, among ghosts of
+     * the same kind, the last one declared wins
+     *
+     * @param c
+     * @param name
+     *
+     * @return the ghost, or null if there is none with that name
+     */
+    static GhostFunction findGhost(liquidjava.processor.context.Context c, String name) {
+        GhostFunction found = null;
+        for (GhostFunction g : c.getGhosts())
+            if (g.getName().equals(name))
+                found = g;
+        for (GhostFunction g : c.getGhostState())
+            if (g.getName().equals(name))
+                found = g;
+        return found;
     }
 
-    private static void addBuiltinFunctions(Context z3, Map<String, FuncDecl<?>> funcTranslation) {
-        funcTranslation.put("length", z3.mkFuncDecl("length", getSort(z3, "int[]"), getSort(z3, "int"))); // ERRRRRRRRRRRRO!!!!!!!!!!!!!
-        // System.out.println("\nWorks only for int[] now! Change in future. Ignore this
-        // message, it is a glorified
-        // todo");
-        // TODO add built-in function
-        Sort[] s = Stream.of(getSort(z3, "int[]"), getSort(z3, "int"), getSort(z3, "int")).toArray(Sort[]::new);
-        funcTranslation.put("addToIndex", z3.mkFuncDecl("addToIndex", s, getSort(z3, "void")));
-
-        s = Stream.of(getSort(z3, "int[]"), getSort(z3, "int")).toArray(Sort[]::new);
-        funcTranslation.put("getFromIndex", z3.mkFuncDecl("getFromIndex", s, getSort(z3, "int")));
+    /**
+     * Declares a ghost function, ghost state or built-in function
+     *
+     * @param name
+     * @param c
+     * @param symbols
+     *
+     * @return the declaration, or null if there is no function with that name
+     */
+    static FuncDecl<?> translateFunction(String name, liquidjava.processor.context.Context c, Z3SymbolTable symbols) {
+        GhostFunction gh = findGhost(c, name);
+        if (gh != null)
+            return symbols.getFunction(gh.getName(),
+                    gh.getParametersTypes().stream().map(t -> t.toString()).collect(Collectors.toList()),
+                    gh.getReturnType().toString());
+        return translateBuiltinFunction(name, symbols);
     }
 
-    static Sort getSort(Context z3, String sort) {
-        switch (sort) {
-        case "int":
-            return z3.getIntSort();
-        case "boolean":
-            return z3.getBoolSort();
-        case "long":
-            return z3.getRealSort();
-        case "float":
-            return z3.mkFPSort32();
-        case "double":
-            return z3.mkFPSortDouble();
-        case "int[]":
-            return z3.mkArraySort(z3.mkIntSort(), z3.mkIntSort());
-        case "String":
-            return z3.getStringSort();
-        case "void":
-            return z3.mkUninterpretedSort("void");
-        // case "List":return z3.mkListSort(name, elemSort)
-        default:
-            return z3.mkUninterpretedSort(sort);
-        }
+    /** Whether the signature of the ghost with that name has float or double types */
+    static boolean hasFloatingPoint(liquidjava.processor.context.Context c, String name) {
+        GhostFunction gh = findGhost(c, name);
+        return gh != null && (isFloatingPoint(gh.getReturnType())
+                || gh.getParametersTypes().stream().anyMatch(TranslatorContextToZ3::isFloatingPoint));
     }
 
-    public static void addGhostStates(Context z3, List<GhostState> ghostState,
-            Map<String, FuncDecl<?>> funcTranslation) {
-        for (GhostState g : ghostState) {
-            addGhostFunction(z3, g, funcTranslation);
-            // if(g.getRefinement() != null)
-            // premisesToAdd.add(g.getRefinement().getExpression());
-        }
+    static boolean isFloatingPoint(CtTypeReference<?> type) {
+        return type != null && (type.toString().equals("float") || type.toString().equals("double"));
     }
 
-    private static void addGhostFunction(Context z3, GhostFunction gh, Map<String, FuncDecl<?>> funcTranslation) {
-        List<CtTypeReference<?>> paramTypes = gh.getParametersTypes();
-        Sort ret = getSort(z3, gh.getReturnType().toString());
-        Sort[] d = paramTypes.stream().map(t -> t.toString()).map(t -> getSort(z3, t)).toArray(Sort[]::new);
-        funcTranslation.put(gh.getName(), z3.mkFuncDecl(gh.getName(), d, ret));
+    private static FuncDecl<?> translateBuiltinFunction(String name, Z3SymbolTable symbols) {
+        // TODO add built-in function
+        switch (name) {
+        case "length": // Works only for int[] now! Change in future
+            return symbols.getFunction("length", List.of("int[]"), "int");
+        case "addToIndex":
+            return symbols.getFunction("addToIndex", List.of("int[]", "int", "int"), "void");
+        case "getFromIndex":
+            return symbols.getFunction("getFromIndex", List.of("int[]", "int"), "int");
+        default:
+            return null;
+        }
     }
 }
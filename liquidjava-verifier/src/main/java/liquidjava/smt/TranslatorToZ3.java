@@ -1,6 +1,5 @@
 package liquidjava.smt;
 
-import com.martiansoftware.jsap.SyntaxException;
 import com.microsoft.z3.ArithExpr;
 import com.microsoft.z3.ArrayExpr;
 import com.microsoft.z3.BoolExpr;
@@ -10,45 +9,115 @@ import com.microsoft.z3.FuncDecl;
 import com.microsoft.z3.IntExpr;
 import com.microsoft.z3.IntNum;
 import com.microsoft.z3.RealExpr;
-import com.microsoft.z3.Solver;
+import com.microsoft.z3.SeqExpr;
 import com.microsoft.z3.Sort;
 import com.microsoft.z3.Status;
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import liquidjava.processor.context.AliasWrapper;
+import liquidjava.rj_language.ast.Expression;
 import org.apache.commons.lang3.NotImplementedException;
 
-public class TranslatorToZ3 implements AutoCloseable {
+public class TranslatorToZ3 {
 
-    private com.microsoft.z3.Context z3 = new com.microsoft.z3.Context();
+    private com.microsoft.z3.Context z3;
+    private liquidjava.processor.context.Context context;
+    // declarations are created the first time the translation meets each symbol
     private Map<String, Expr<?>> varTranslation = new HashMap<>();
     private Map<String, List<Expr<?>>> varSuperTypes = new HashMap<>();
     private Map<String, AliasWrapper> aliasTranslation = new HashMap<>();
     private Map<String, FuncDecl<?>> funcTranslation = new HashMap<>();
+    // compound expressions already translated, so that the ones that repeat in a query are built once
+    private Map<Expression, Expr<?>> memo = new HashMap<>();
+    private PooledContext pc;
+    private Z3SymbolTable symbols;
+    private boolean usesFloatingPoint;
+    private boolean approximatesFloatingPoint;
+    // constants of the string literals met, when strings are an uninterpreted sort
+    private Set<Expr<?>> stringLiterals = new LinkedHashSet<>();
+    private String reasonUnknown;
+
+    public TranslatorToZ3(liquidjava.processor.context.Context c, PooledContext pc) {
+        this(c, pc, FloatingPointEncoding.IEEE);
+    }
+
+    public TranslatorToZ3(liquidjava.processor.context.Context c, PooledContext pc, FloatingPointEncoding encoding) {
+        this(c, pc, encoding, true);
+    }
 
-    public TranslatorToZ3(liquidjava.processor.context.Context c) {
-        TranslatorContextToZ3.translateVariables(z3, c.getContext(), varTranslation);
-        TranslatorContextToZ3.storeVariablesSubtypes(z3, c.getAllVariablesWithSupertypes(), varSuperTypes);
+    /**
+     * @param c
+     * @param pc
+     * @param encoding
+     *            IEEE to translate float and double terms to floating point, REAL to translate them to reals
+     * @param stringTheory
+     *            whether to translate strings with the string theory or as an uninterpreted sort, see
+     *            {@link StringAbstraction}
+     */
+    public TranslatorToZ3(liquidjava.processor.context.Context c, PooledContext pc, FloatingPointEncoding encoding,
+            boolean stringTheory) {
+        z3 = pc.getZ3();
+        this.pc = pc;
+        symbols = pc.getSymbols(encoding, stringTheory);
+        context = c;
         TranslatorContextToZ3.addAlias(z3, c.getAlias(), aliasTranslation);
-        TranslatorContextToZ3.addGhostFunctions(z3, c.getGhosts(), funcTranslation);
-        TranslatorContextToZ3.addGhostStates(z3, c.getGhostState(), funcTranslation);
     }
 
+    /**
+     * Translates the expression, reusing the translation of an equal expression met before. Since z3 shares equal
+     * terms, the expressions that repeat become shared nodes of the query.
+     *
+     * @param e
+     *
+     * @return
+     *
+     * @throws Exception
+     */
+    public Expr<?> eval(Expression e) throws Exception {
+        if (!e.hasChildren())
+            return e.translate(this);
+        Expr<?> r = memo.get(e);
+        pc.recordTranslation(r != null);
+        if (r == null) {
+            r = e.translate(this);
+            memo.put(e, r);
+        }
+        return r;
+    }
+
+    /** Checks the satisfiability of the expression on a fresh in-process solver */
     public Status verifyExpression(Expr<?> e) throws Exception {
-        Solver s = z3.mkSolver();
-        // s.add((BoolExpr) e.eval(this));
-        // for(Expression ex: premisesToAdd)
-        // s.add((BoolExpr) ex.eval(this));
+        try (BackendSolver s = new Z3Backend().mkSolver(z3)) {
+            return verifyExpression(e, s);
+        }
+    }
+
+    /**
+     * Checks the satisfiability of the expression on an empty solver
+     *
+     * @param e
+     * @param s
+     *            solver of the backend, with the time and resource limits of the check already set
+     *
+     * @return
+     */
+    public Status verifyExpression(Expr<?> e, BackendSolver s) throws Exception {
         s.add((BoolExpr) e);
         Status st = s.check();
-        if (st.equals(Status.SATISFIABLE)) {
-            // Example of values
-            // System.out.println(s.getModel());
-        }
+        if (st.equals(Status.UNKNOWN))
+            reasonUnknown = s.getReasonUnknown();
         return st;
     }
 
+    /** Why the solver gave up on the last expression it could not decide */
+    public String getReasonUnknown() {
+        return reasonUnknown;
+    }
+
     // #####################Literals and Variables#####################
     public Expr<?> makeIntegerLiteral(int value) {
         return z3.mkInt(value);
@@ -59,11 +128,29 @@ public class TranslatorToZ3 implements AutoCloseable {
     }
 
     public Expr<?> makeDoubleLiteral(double value) {
-        return z3.mkFP(value, z3.mkFPSort64());
+        if (symbols.isRealFloatingPoint() && Double.isFinite(value)) {
+            approximatesFloatingPoint = true;
+            return z3.mkNumeral(BigDecimal.valueOf(value).toPlainString(), z3.getRealSort());
+        }
+        usesFloatingPoint = true;
+        return z3.mkFP(value, symbols.getFPSort64());
     }
 
     public Expr<?> makeString(String s) {
-        return z3.mkString(s);
+        Expr<?> e = symbols.getStringLiteral(s);
+        if (!symbols.isStringTheory())
+            stringLiterals.add(e);
+        return e;
+    }
+
+    /**
+     * Conjoins to the expression the axioms of the string literals translated so far, which make distinct literals
+     * distinct constants when strings are an uninterpreted sort
+     */
+    public Expr<?> withStringAxioms(Expr<?> e) {
+        if (stringLiterals.size() < 2)
+            return e;
+        return z3.mkAnd((BoolExpr) e, z3.mkDistinct(stringLiterals.toArray(new Expr<?>[0])));
     }
 
     public Expr<?> makeBooleanLiteral(boolean value) {
@@ -71,18 +158,33 @@ public class TranslatorToZ3 implements AutoCloseable {
     }
 
     private Expr<?> getVariableTranslation(String name) throws Exception {
-        if (!varTranslation.containsKey(name))
-            throw new NotFoundError("Variable '" + name.toString() + "' not found");
         Expr<?> e = varTranslation.get(name);
-        if (e == null)
-            e = varTranslation.get(String.format("this#%s", name));
-        if (e == null)
-            throw new SyntaxException("Unknown variable:" + name);
+        if (e == null) {
+            e = TranslatorContextToZ3.translateVariable(z3, name, context, symbols);
+            if (e == null)
+                throw new NotFoundError("Variable '" + name.toString() + "' not found");
+            if (symbols.isRealFloatingPoint() && TranslatorContextToZ3.isFloatingPoint(context.getVariableType(name)))
+                approximatesFloatingPoint = true;
+            varTranslation.put(name, e);
+        }
         return e;
     }
 
     public Expr<?> makeVariable(String name) throws Exception {
-        return getVariableTranslation(name); // int[] not in varTranslation
+        Expr<?> e = getVariableTranslation(name); // int[] not in varTranslation
+        if (e instanceof FPExpr)
+            usesFloatingPoint = true;
+        return e;
+    }
+
+    /** Whether any of the translated expressions involves floating point terms */
+    public boolean usesFloatingPoint() {
+        return usesFloatingPoint;
+    }
+
+    /** Whether any of the translated expressions has float or double terms that were translated to reals */
+    public boolean approximatesFloatingPoint() {
+        return approximatesFloatingPoint;
     }
 
     public Expr<?> makeFunctionInvocation(String name, Expr<?>[] params) throws Exception {
@@ -91,16 +193,21 @@ public class TranslatorToZ3 implements AutoCloseable {
         if (name.equals("getFromIndex"))
             return makeSelect(name, params);
 
-        if (!funcTranslation.containsKey(name))
-            throw new NotFoundError("Function '" + name + "' not found");
-
         FuncDecl<?> fd = funcTranslation.get(name);
+        if (fd == null) {
+            fd = TranslatorContextToZ3.translateFunction(name, context, symbols);
+            if (fd == null)
+                throw new NotFoundError("Function '" + name + "' not found");
+            if (symbols.isRealFloatingPoint() && TranslatorContextToZ3.hasFloatingPoint(context, name))
+                approximatesFloatingPoint = true;
+            funcTranslation.put(name, fd);
+        }
         Sort[] s = fd.getDomain();
         for (int i = 0; i < s.length; i++) {
             Expr<?> param = params[i];
             if (!s[i].equals(param.getSort())) {
                 // Look if the function type is a supertype of this
-                List<Expr<?>> le = varSuperTypes.get(param.toString().replace("|", ""));
+                List<Expr<?>> le = getSuperTypesTranslation(param.toString().replace("|", ""));
                 if (le != null)
                     for (Expr<?> e : le)
                         if (e.getSort().equals(s[i]))
@@ -114,6 +221,12 @@ public class TranslatorToZ3 implements AutoCloseable {
         return z3.mkApp(fd, params);
     }
 
+    private List<Expr<?>> getSuperTypesTranslation(String name) {
+        if (!varSuperTypes.containsKey(name))
+            varSuperTypes.put(name, TranslatorContextToZ3.translateSuperTypes(name, context, symbols));
+        return varSuperTypes.get(name);
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private Expr<?> makeSelect(String name, Expr<?>[] params) {
         if (params.length == 2 && params[0] instanceof ArrayExpr)
@@ -205,7 +318,10 @@ public class TranslatorToZ3 implements AutoCloseable {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Expr<?> makeAdd(Expr<?> eval, Expr<?> eval2) {
         if (eval instanceof FPExpr || eval2 instanceof FPExpr)
-            return z3.mkFPAdd(z3.mkFPRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
+            return z3.mkFPAdd(symbols.getRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
+        if (eval instanceof SeqExpr && eval2 instanceof SeqExpr)
+            // the array picks the sequence overload over the bit-vector one
+            return z3.mkConcat(new SeqExpr[] { (SeqExpr) eval, (SeqExpr) eval2 });
 
         return z3.mkAdd((ArithExpr) eval, (ArithExpr) eval2);
     }
@@ -213,7 +329,7 @@ public class TranslatorToZ3 implements AutoCloseable {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Expr<?> makeSub(Expr<?> eval, Expr<?> eval2) {
         if (eval instanceof FPExpr || eval2 instanceof FPExpr)
-            return z3.mkFPSub(z3.mkFPRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
+            return z3.mkFPSub(symbols.getRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
 
         return z3.mkSub((ArithExpr) eval, (ArithExpr) eval2);
     }
@@ -221,7 +337,7 @@ public class TranslatorToZ3 implements AutoCloseable {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Expr<?> makeMul(Expr<?> eval, Expr<?> eval2) {
         if (eval instanceof FPExpr || eval2 instanceof FPExpr)
-            return z3.mkFPMul(z3.mkFPRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
+            return z3.mkFPMul(symbols.getRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
 
         return z3.mkMul((ArithExpr) eval, (ArithExpr) eval2);
     }
@@ -229,29 +345,32 @@ public class TranslatorToZ3 implements AutoCloseable {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Expr<?> makeDiv(Expr<?> eval, Expr<?> eval2) {
         if (eval instanceof FPExpr || eval2 instanceof FPExpr)
-            return z3.mkFPDiv(z3.mkFPRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
+            return z3.mkFPDiv(symbols.getRoundNearestTiesToEven(), toFP(eval), toFP(eval2));
 
         return z3.mkDiv((ArithExpr) eval, (ArithExpr) eval2);
     }
 
     public Expr<?> makeMod(Expr<?> eval, Expr<?> eval2) {
-        if (eval instanceof FPExpr || eval2 instanceof FPExpr)
+        // reals have no remainder, so that of floating point terms encoded as reals is still taken in IEEE 754
+        if (eval instanceof FPExpr || eval2 instanceof FPExpr
+                || (symbols.isRealFloatingPoint() && !(eval instanceof IntExpr && eval2 instanceof IntExpr)))
             return z3.mkFPRem(toFP(eval), toFP(eval2));
         return z3.mkMod((IntExpr) eval, (IntExpr) eval2);
     }
 
     private FPExpr toFP(Expr<?> e) {
+        usesFloatingPoint = true;
         FPExpr f;
         if (e instanceof FPExpr) {
             f = (FPExpr) e;
         } else if (e instanceof IntNum)
-            f = z3.mkFP(((IntNum) e).getInt(), z3.mkFPSort64());
+            f = z3.mkFP(((IntNum) e).getInt(), symbols.getFPSort64());
         else if (e instanceof IntExpr) {
             IntExpr ee = (IntExpr) e;
             RealExpr re = z3.mkInt2Real(ee);
-            f = z3.mkFPToFP(z3.mkFPRoundNearestTiesToEven(), re, z3.mkFPSort64());
+            f = z3.mkFPToFP(symbols.getRoundNearestTiesToEven(), re, symbols.getFPSort64());
         } else if (e instanceof RealExpr) {
-            f = z3.mkFPToFP(z3.mkFPRoundNearestTiesToEven(), (RealExpr) e, z3.mkFPSort64());
+            f = z3.mkFPToFP(symbols.getRoundNearestTiesToEven(), (RealExpr) e, symbols.getFPSort64());
         } else {
             throw new NotImplementedException();
         }
@@ -263,9 +382,4 @@ public class TranslatorToZ3 implements AutoCloseable {
             return z3.mkITE((BoolExpr) c, t, e);
         throw new RuntimeException("Condition is not a boolean expression");
     }
-
-    @Override
-    public void close() throws Exception {
-        z3.close();
-    }
 }
@@ -0,0 +1,21 @@
+package liquidjava.smt;
+
+/**
+ * The solver could neither prove nor refute an obligation, e.g., because it reached its time or resource limit
+ */
+public class UnknownResultError extends Exception {
+
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+
+    public UnknownResultError(String message, String reason) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,258 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Status;
+import com.microsoft.z3.Version;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verdicts kept on disk between runs, in an append-only log with one {@code <sha-256 of the key> <status>} record per
+ * line. Each build of the verifier and each version of z3 writes to a log of its own, so a verdict is never reused by a
+ * verifier that could translate the obligation differently. Several processes may share the directory: records are
+ * appended under an exclusive file lock and, when reading, incomplete or malformed lines are skipped.
+ *
+ * <p>
+ * The store also keeps the unsat cores of proved obligations, with one {@code <sha-256 of the key> <premise indexes>}
+ * record per line. A core only picks the premises to try first and the obligation is still checked with them, so the
+ * cores are shared by every build of the verifier and survive the changes that invalidate the verdicts.
+ */
+public class VerdictStore implements AutoCloseable {
+
+    private static final String FORMAT_VERSION = "v1";
+    private static final int FLUSH_THRESHOLD = 256;
+    private static final int DIGEST_LENGTH = 64;
+
+    private final Path file;
+    private final Path coreFile;
+    private final Map<String, Status> verdicts = new HashMap<>();
+    private final Map<String, int[]> cores = new HashMap<>();
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder pendingCores = new StringBuilder();
+    private int pendingRecords;
+
+    private int loaded;
+    private int appended;
+    private int coresLoaded;
+    private int coresAppended;
+
+    private VerdictStore(Path file, Path coreFile) {
+        this.file = file;
+        this.coreFile = coreFile;
+    }
+
+    /**
+     * Opens the log of this verifier build and z3 version in the given directory, loading the verdicts already in it
+     *
+     * @param dir
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    public static VerdictStore open(Path dir) throws IOException {
+        return open(dir, buildId(), Version.getFullVersion());
+    }
+
+    /** Opens the log of the given verifier build and z3 version */
+    static VerdictStore open(Path dir, String buildId, String z3Version) throws IOException {
+        Files.createDirectories(dir);
+        String z3 = z3Version.replaceAll("[^A-Za-z0-9.]", "_");
+        VerdictStore store = new VerdictStore(
+                dir.resolve(String.format("verdicts-%s-%s-z3-%s.log", FORMAT_VERSION, buildId, z3)),
+                dir.resolve(String.format("cores-%s.log", FORMAT_VERSION)));
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        for (String line : readLines(file))
+            parseRecord(line);
+        loaded = verdicts.size();
+        for (String line : readLines(coreFile))
+            parseCore(line);
+        coresLoaded = cores.size();
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(file))
+            return lines;
+        String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+        int start = 0;
+        int end;
+        // a line without its terminator may still be being written by another process
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            lines.add(content.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private void parseCore(String line) {
+        if (line.indexOf(' ') != DIGEST_LENGTH)
+            return;
+        String indexes = line.substring(DIGEST_LENGTH + 1);
+        try {
+            // later records replace earlier ones
+            cores.put(line.substring(0, DIGEST_LENGTH), indexes.isEmpty() ? new int[0]
+                    : Arrays.stream(indexes.split(",")).mapToInt(Integer::parseInt).toArray());
+        } catch (NumberFormatException e) {
+            // malformed record, ignored
+        }
+    }
+
+    private void parseRecord(String line) {
+        int sep = line.indexOf(' ');
+        if (sep != DIGEST_LENGTH)
+            return;
+        try {
+            verdicts.put(line.substring(0, sep), Status.valueOf(line.substring(sep + 1)));
+        } catch (IllegalArgumentException e) {
+            // malformed record, ignored
+        }
+    }
+
+    public synchronized Status get(String key) {
+        return verdicts.get(digest(key));
+    }
+
+    /**
+     * Records the verdict of an obligation. Only definite verdicts are kept, since an unknown result may depend on the
+     * limits of the solver
+     *
+     * @param key
+     * @param s
+     */
+    public synchronized void put(String key, Status s) {
+        if (s == Status.UNKNOWN)
+            return;
+        String d = digest(key);
+        if (verdicts.put(d, s) == s)
+            return;
+        pending.append(d).append(' ').append(s.name()).append('\n');
+        if (++pendingRecords >= FLUSH_THRESHOLD)
+            flush();
+    }
+
+    /**
+     * Returns the unsat core recorded for the key, as indexes of the premises in the order of
+     * {@link QueryCanonicalizer#sortPremises}, or null if there is none
+     */
+    public synchronized int[] getCore(String key) {
+        return cores.get(digest(key));
+    }
+
+    public synchronized void putCore(String key, int[] core) {
+        String d = digest(key);
+        int[] old = cores.put(d, core);
+        if (Arrays.equals(old, core))
+            return;
+        pendingCores.append(d).append(' ')
+                .append(Arrays.stream(core).mapToObj(Integer::toString).collect(Collectors.joining(","))).append('\n');
+        if (++pendingRecords >= FLUSH_THRESHOLD)
+            flush();
+    }
+
+    private void flush() {
+        if (pendingRecords == 0)
+            return;
+        if (append(file, pending))
+            appended += records(pending);
+        if (append(coreFile, pendingCores))
+            coresAppended += records(pendingCores);
+        pending.setLength(0);
+        pendingCores.setLength(0);
+        pendingRecords = 0;
+    }
+
+    private static int records(StringBuilder sb) {
+        return (int) sb.chars().filter(ch -> ch == '\n').count();
+    }
+
+    private static boolean append(Path file, StringBuilder records) {
+        if (records.length() == 0)
+            return false;
+        ByteBuffer bb = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.US_ASCII));
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND); FileLock lock = ch.lock()) {
+            while (bb.hasRemaining())
+                ch.write(bb);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not write to the verdict store " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized String report() {
+        return String.format("Verdict store: %s, %d verdicts loaded, %d appended, %d unsat cores loaded, %d appended",
+                file, loaded, appended, coresLoaded, coresAppended);
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+    }
+
+    private static String digest(String key) {
+        return HexFormat.of().formatHex(sha256().digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Hash of the classes of the verifier, taken from its jar or from its classes directory */
+    private static String buildId() throws IOException {
+        MessageDigest md = sha256();
+        CodeSource cs = VerdictStore.class.getProtectionDomain().getCodeSource();
+        if (cs == null)
+            throw new IOException("Could not locate the verifier classes");
+        try {
+            Path location = Path.of(cs.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                List<Path> classes;
+                try (Stream<Path> s = Files.walk(location)) {
+                    classes = s.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path p : classes) {
+                    md.update(location.relativize(p).toString().getBytes(StandardCharsets.UTF_8));
+                    md.update(Files.readAllBytes(p));
+                }
+            } else {
+                try (InputStream in = Files.newInputStream(location)) {
+                    byte[] buf = new byte[1 << 16];
+                    int n;
+                    while ((n = in.read(buf)) > 0)
+                        md.update(buf, 0, n);
+                }
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException("Could not locate the verifier classes", e);
+        }
+        return HexFormat.of().formatHex(md.digest()).substring(0, 16);
+    }
+}
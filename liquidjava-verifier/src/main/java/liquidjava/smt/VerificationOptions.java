@@ -0,0 +1,334 @@
+package liquidjava.smt;
+
+/**
+ * Tuning options of a verification session. The defaults can be overridden with system properties, e.g.
+ * {@code -Dliquidjava.smt.pool.size=4}
+ */
+public class VerificationOptions {
+
+    public static final String POOL_SIZE = "liquidjava.smt.pool.size";
+    public static final String POOL_MAX_REUSE = "liquidjava.smt.pool.maxReuse";
+    public static final String INCREMENTAL = "liquidjava.smt.incremental";
+    public static final String INCREMENTAL_MAX_PREMISES = "liquidjava.smt.incremental.maxPremises";
+    public static final String CACHE_SIZE = "liquidjava.smt.cache.size";
+    public static final String CACHE_DIR = "liquidjava.smt.cache.dir";
+    public static final String SLICING = "liquidjava.smt.slicing";
+    public static final String FAST_PATH = "liquidjava.smt.fastPath";
+    public static final String INTERVALS = "liquidjava.smt.intervals";
+    public static final String TIMEOUT = "liquidjava.smt.timeout";
+    public static final String RLIMIT = "liquidjava.smt.rlimit";
+    public static final String DEADLINE = "liquidjava.smt.deadline";
+    public static final String PORTFOLIO_THRESHOLD = "liquidjava.smt.portfolio.threshold";
+    public static final String DUMP_DIR = "liquidjava.smt.dump.dir";
+    public static final String FP_ENCODING = "liquidjava.smt.fp.encoding";
+    public static final String BATCH = "liquidjava.smt.batch";
+    public static final String SOLVER_COMMAND = "liquidjava.smt.solver.command";
+    public static final String LOGIC_SOLVERS = "liquidjava.smt.logicSolvers";
+    public static final String CORES = "liquidjava.smt.cores";
+    public static final String STRING_ABSTRACTION = "liquidjava.smt.strings.abstract";
+    public static final String WARM_UP = "liquidjava.smt.warmUp";
+    public static final String PARSE_CACHE_SIZE = "liquidjava.parse.cacheSize";
+    public static final String DIRECT_PARSING = "liquidjava.parse.direct";
+
+    private int poolSize = 2;
+    private int poolMaxReuse = 1000;
+    private boolean incremental = false;
+    private int incrementalMaxPremises = 5000;
+    private int cacheSize = 10000;
+    private String cacheDir = null;
+    private boolean slicing = true;
+    private boolean fastPath = true;
+    private boolean intervals = true;
+    private int timeout = 30000;
+    private int rlimit = 0;
+    private int deadline = 0;
+    private int portfolioThreshold = 0;
+    private String dumpDir = null;
+    private FloatingPointEncoding fpEncoding = FloatingPointEncoding.IEEE;
+    private boolean batch = true;
+    private String solverCommand = null;
+    private boolean logicSolvers = true;
+    private boolean cores = true;
+    private boolean stringAbstraction = true;
+    private boolean warmUp = true;
+    private int parseCacheSize = 4096;
+    private boolean directParsing = true;
+
+    public static VerificationOptions fromSystemProperties() {
+        VerificationOptions o = new VerificationOptions();
+        o.poolSize = getInt(POOL_SIZE, o.poolSize);
+        o.poolMaxReuse = getInt(POOL_MAX_REUSE, o.poolMaxReuse);
+        o.incremental = getBoolean(INCREMENTAL, o.incremental);
+        o.incrementalMaxPremises = getInt(INCREMENTAL_MAX_PREMISES, o.incrementalMaxPremises);
+        o.cacheSize = getInt(CACHE_SIZE, o.cacheSize);
+        String dir = System.getProperty(CACHE_DIR);
+        o.cacheDir = dir == null || dir.isBlank() ? null : dir.trim();
+        o.slicing = getBoolean(SLICING, o.slicing);
+        o.fastPath = getBoolean(FAST_PATH, o.fastPath);
+        o.intervals = getBoolean(INTERVALS, o.intervals);
+        o.timeout = getInt(TIMEOUT, o.timeout);
+        o.rlimit = getInt(RLIMIT, o.rlimit);
+        o.deadline = getInt(DEADLINE, o.deadline);
+        o.portfolioThreshold = getInt(PORTFOLIO_THRESHOLD, o.portfolioThreshold);
+        String dump = System.getProperty(DUMP_DIR);
+        o.dumpDir = dump == null || dump.isBlank() ? null : dump.trim();
+        o.fpEncoding = getEncoding(FP_ENCODING, o.fpEncoding);
+        o.batch = getBoolean(BATCH, o.batch);
+        String command = System.getProperty(SOLVER_COMMAND);
+        o.solverCommand = command == null || command.isBlank() ? null : command.trim();
+        o.logicSolvers = getBoolean(LOGIC_SOLVERS, o.logicSolvers);
+        o.cores = getBoolean(CORES, o.cores);
+        o.stringAbstraction = getBoolean(STRING_ABSTRACTION, o.stringAbstraction);
+        o.warmUp = getBoolean(WARM_UP, o.warmUp);
+        o.parseCacheSize = getInt(PARSE_CACHE_SIZE, o.parseCacheSize);
+        o.directParsing = getBoolean(DIRECT_PARSING, o.directParsing);
+        return o;
+    }
+
+    private static int getInt(String key, int defaultValue) {
+        String v = System.getProperty(key);
+        if (v == null || v.isBlank())
+            return defaultValue;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + v);
+            return defaultValue;
+        }
+    }
+
+    private static FloatingPointEncoding getEncoding(String key, FloatingPointEncoding defaultValue) {
+        String v = System.getProperty(key);
+        if (v == null || v.isBlank())
+            return defaultValue;
+        try {
+            return FloatingPointEncoding.parse(v);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + v);
+            return defaultValue;
+        }
+    }
+
+    private static boolean getBoolean(String key, boolean defaultValue) {
+        String v = System.getProperty(key);
+        if (v == null || v.isBlank())
+            return defaultValue;
+        return Boolean.parseBoolean(v.trim());
+    }
+
+    /** Maximum number of idle z3 contexts kept alive by the pool */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /** Number of queries a z3 context serves before it is closed and replaced by a fresh one */
+    public int getPoolMaxReuse() {
+        return poolMaxReuse;
+    }
+
+    public void setPoolMaxReuse(int poolMaxReuse) {
+        this.poolMaxReuse = poolMaxReuse;
+    }
+
+    /** Checks obligations on a persistent solver, asserting premises once and each goal in its own push/pop scope */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /** Number of premises the persistent solver holds before it is reset */
+    public int getIncrementalMaxPremises() {
+        return incrementalMaxPremises;
+    }
+
+    public void setIncrementalMaxPremises(int incrementalMaxPremises) {
+        this.incrementalMaxPremises = incrementalMaxPremises;
+    }
+
+    /** Maximum number of verdicts kept by the query cache, 0 disables it */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /** Directory of the verdicts kept between runs, null if they are not kept */
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /** Leaves out of each query the premises that share no symbols with its goal */
+    public boolean isSlicing() {
+        return slicing;
+    }
+
+    public void setSlicing(boolean slicing) {
+        this.slicing = slicing;
+    }
+
+    /** Proves the obligations that are valid for syntactic reasons without calling z3 */
+    public boolean isFastPath() {
+        return fastPath;
+    }
+
+    public void setFastPath(boolean fastPath) {
+        this.fastPath = fastPath;
+    }
+
+    /** Proves the obligations over linear integer arithmetic that follow from the bounds of their terms */
+    public boolean isIntervals() {
+        return intervals;
+    }
+
+    public void setIntervals(boolean intervals) {
+        this.intervals = intervals;
+    }
+
+    /** Time limit of each query in milliseconds, 0 for no limit */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /** Resource limit of each query, in z3 rlimit units, 0 for no limit */
+    public int getRlimit() {
+        return rlimit;
+    }
+
+    public void setRlimit(int rlimit) {
+        this.rlimit = rlimit;
+    }
+
+    /** Time limit of the whole verification in milliseconds, 0 for no limit */
+    public int getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(int deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Time in milliseconds after which a query is given up and raced again under several solver configurations, 0 to
+     * disable the portfolio
+     */
+    public int getPortfolioThreshold() {
+        return portfolioThreshold;
+    }
+
+    public void setPortfolioThreshold(int portfolioThreshold) {
+        this.portfolioThreshold = portfolioThreshold;
+    }
+
+    /** Directory where every query sent to z3 is written as an SMT-LIB2 file, null to not write them */
+    public String getDumpDir() {
+        return dumpDir;
+    }
+
+    public void setDumpDir(String dumpDir) {
+        this.dumpDir = dumpDir;
+    }
+
+    /** Encoding of the float and double terms of the queries */
+    public FloatingPointEncoding getFpEncoding() {
+        return fpEncoding;
+    }
+
+    public void setFpEncoding(FloatingPointEncoding fpEncoding) {
+        this.fpEncoding = fpEncoding;
+    }
+
+    /** Checks the obligations of the arguments of a call together, on one solver */
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Command of a solver process that reads SMT-LIB2 from its standard input, which decides the queries instead of the
+     * in-process z3, null to use the in-process z3
+     */
+    public String getSolverCommand() {
+        return solverCommand;
+    }
+
+    public void setSolverCommand(String solverCommand) {
+        this.solverCommand = solverCommand;
+    }
+
+    /** Checks each query on a solver specialized for its logic, when it has one */
+    public boolean isLogicSolvers() {
+        return logicSolvers;
+    }
+
+    public void setLogicSolvers(boolean logicSolvers) {
+        this.logicSolvers = logicSolvers;
+    }
+
+    /**
+     * Keeps the unsat cores of the proved obligations in the verdict store and checks each obligation with the premises
+     * of its core first, has no effect without a cache directory
+     */
+    public boolean isCores() {
+        return cores;
+    }
+
+    public void setCores(boolean cores) {
+        this.cores = cores;
+    }
+
+    /** Translates strings as an uninterpreted sort in the queries that only compare them for equality */
+    public boolean isStringAbstraction() {
+        return stringAbstraction;
+    }
+
+    public void setStringAbstraction(boolean stringAbstraction) {
+        this.stringAbstraction = stringAbstraction;
+    }
+
+    /** Gets the solver ready in the background while the model of the sources is built */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /** Maximum number of parsed refinements kept by the parser, 0 to parse every refinement */
+    public int getParseCacheSize() {
+        return parseCacheSize;
+    }
+
+    public void setParseCacheSize(int parseCacheSize) {
+        this.parseCacheSize = parseCacheSize;
+    }
+
+    /** Parses the refinements with the hand-written parser, and only those it does not accept with the grammar */
+    public boolean isDirectParsing() {
+        return directParsing;
+    }
+
+    public void setDirectParsing(boolean directParsing) {
+        this.directParsing = directParsing;
+    }
+}
@@ -0,0 +1,306 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Params;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import liquidjava.rj_language.parsing.RefinementsParser;
+
+/**
+ * Owns the solver resources that live for a whole verification run, such as the pool of z3 contexts. The session that
+ * is currently open is reachable through {@link #current()}, in the same way as the singleton
+ * {@link liquidjava.processor.context.Context}.
+ */
+public class VerificationSession implements AutoCloseable {
+
+    private static VerificationSession current;
+
+    private final VerificationOptions options;
+    private final Z3ContextPool contextPool;
+    private final QueryCache queryCache;
+    private final PremiseSlicer premiseSlicer = new PremiseSlicer();
+    private final SyntacticProver syntacticProver = new SyntacticProver();
+    private final IntervalProver intervalProver = new IntervalProver();
+    private final SolverPortfolio portfolio = new SolverPortfolio(this);
+    private final BatchChecker batchChecker = new BatchChecker(this);
+    private final LogicClassifier logicClassifier = new LogicClassifier();
+    private final PremiseCores premiseCores = new PremiseCores(this);
+    private final StringAbstraction stringAbstraction;
+    private final SolverWarmUp warmUp = new SolverWarmUp(this);
+    private final QueryDump queryDump;
+    private final FloatingPointEncoder floatingPointEncoder;
+    private final SolverBackend backend;
+    private IncrementalSolver incrementalSolver;
+    private final long startTime = System.currentTimeMillis();
+    private final List<String> unknownResults = new ArrayList<>();
+
+    private VerificationSession(VerificationOptions options) {
+        this.options = options;
+        this.contextPool = new Z3ContextPool(options.getPoolSize(), options.getPoolMaxReuse());
+        this.queryCache = new QueryCache(options.getCacheSize(), openStore(options.getCacheDir()));
+        this.queryDump = openDump(options.getDumpDir());
+        this.floatingPointEncoder = new FloatingPointEncoder(options.getFpEncoding());
+        this.stringAbstraction = new StringAbstraction(options.isStringAbstraction());
+        RefinementsParser.getCache().configure(options.getParseCacheSize());
+        RefinementsParser.setDirectParsing(options.isDirectParsing());
+        this.backend = openBackend(options.getSolverCommand());
+    }
+
+    /**
+     * Creates the backend that decides the queries
+     *
+     * @param command
+     *            command of a solver process that reads SMT-LIB2 from its standard input, null for the in-process z3
+     *
+     * @return
+     */
+    public static SolverBackend openBackend(String command) {
+        if (command == null)
+            return new Z3Backend();
+        return new SmtLibPipeBackend(Arrays.asList(command.trim().split("\\s+")));
+    }
+
+    private static VerdictStore openStore(String dir) {
+        if (dir == null)
+            return null;
+        try {
+            return VerdictStore.open(Path.of(dir));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not open the verdict store in " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static QueryDump openDump(String dir) {
+        if (dir == null)
+            return null;
+        try {
+            return QueryDump.open(Path.of(dir));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not open the query dump directory " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static synchronized VerificationSession open(VerificationOptions options) {
+        if (current != null)
+            current.close();
+        current = new VerificationSession(options);
+        return current;
+    }
+
+    /**
+     * Returns the open session, opening one with the options from the system properties if none is open
+     *
+     * @return
+     */
+    public static synchronized VerificationSession current() {
+        if (current == null)
+            current = new VerificationSession(VerificationOptions.fromSystemProperties());
+        return current;
+    }
+
+    public VerificationOptions getOptions() {
+        return options;
+    }
+
+    public Z3ContextPool getContextPool() {
+        return contextPool;
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    public SyntacticProver getSyntacticProver() {
+        return syntacticProver;
+    }
+
+    public IntervalProver getIntervalProver() {
+        return intervalProver;
+    }
+
+    public SolverPortfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public BatchChecker getBatchChecker() {
+        return batchChecker;
+    }
+
+    public LogicClassifier getLogicClassifier() {
+        return logicClassifier;
+    }
+
+    public PremiseCores getPremiseCores() {
+        return premiseCores;
+    }
+
+    public StringAbstraction getStringAbstraction() {
+        return stringAbstraction;
+    }
+
+    public SolverWarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    /** Where the queries sent to z3 are written, null if they are not */
+    public QueryDump getQueryDump() {
+        return queryDump;
+    }
+
+    /** Backend that decides the queries, except the ones raced by the portfolio, which runs in process */
+    public SolverBackend getBackend() {
+        return backend;
+    }
+
+    public FloatingPointEncoder getFloatingPointEncoder() {
+        return floatingPointEncoder;
+    }
+
+    public PremiseSlicer getPremiseSlicer() {
+        return premiseSlicer;
+    }
+
+    /**
+     * Returns the persistent solver of incremental mode, which keeps a pooled context borrowed until the session ends
+     *
+     * @return
+     */
+    public synchronized IncrementalSolver getIncrementalSolver() {
+        if (incrementalSolver == null)
+            incrementalSolver = new IncrementalSolver(this, contextPool.borrow());
+        return incrementalSolver;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return options.getDeadline() > 0 && System.currentTimeMillis() - startTime >= options.getDeadline();
+    }
+
+    /**
+     * Creates the parameters with the limits of the first attempt at a query, whose time limit is cut at the portfolio
+     * threshold when the portfolio is enabled
+     *
+     * @param z3
+     *
+     * @return the parameters, or null if the query has no limits
+     */
+    public Params getSolverLimits(com.microsoft.z3.Context z3) {
+        return getSolverLimits(z3, options.getPortfolioThreshold());
+    }
+
+    /**
+     * Creates the parameters with the limits of a query, the time limit being the smallest of the query timeout, the
+     * time left until the deadline and maxTimeout
+     *
+     * @param z3
+     * @param maxTimeout
+     *            in milliseconds, 0 for no limit
+     *
+     * @return the parameters, or null if the query has no limits
+     */
+    public Params getSolverLimits(com.microsoft.z3.Context z3, long maxTimeout) {
+        long timeout = getQueryTimeout(maxTimeout);
+        if (timeout <= 0 && options.getRlimit() <= 0)
+            return null;
+        Params p = z3.mkParams();
+        if (timeout > 0)
+            p.add("timeout", (int) Math.min(timeout, Integer.MAX_VALUE));
+        if (options.getRlimit() > 0)
+            p.add("rlimit", options.getRlimit());
+        return p;
+    }
+
+    /**
+     * Sets on a solver of the backend the limits of the first attempt at a query, as in
+     * {@link #getSolverLimits(com.microsoft.z3.Context)}
+     *
+     * @param s
+     */
+    public void setSolverLimits(BackendSolver s) {
+        s.setLimits(getQueryTimeout(options.getPortfolioThreshold()), options.getRlimit());
+    }
+
+    /** The smallest of the query timeout, the time left until the deadline and maxTimeout, 0 for no limit */
+    private long getQueryTimeout(long maxTimeout) {
+        long timeout = options.getTimeout();
+        if (options.getDeadline() > 0) {
+            long left = Math.max(1, options.getDeadline() - (System.currentTimeMillis() - startTime));
+            timeout = timeout > 0 ? Math.min(timeout, left) : left;
+        }
+        if (maxTimeout > 0)
+            timeout = timeout > 0 ? Math.min(timeout, maxTimeout) : maxTimeout;
+        return timeout;
+    }
+
+    public synchronized void recordUnknownResult(String query, String reason) {
+        unknownResults.add(reason + ": " + query);
+    }
+
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("---------------------- Verification statistics ----------------------\n");
+        sb.append(warmUp.report()).append("\n");
+        if (options.getParseCacheSize() > 0)
+            sb.append(RefinementsParser.getCache().report()).append("\n");
+        sb.append(RefinementsParser.report()).append("\n");
+        sb.append(contextPool.report()).append("\n");
+        sb.append(contextPool.translationReport()).append("\n");
+        if (options.isFastPath())
+            sb.append(syntacticProver.report()).append("\n");
+        if (options.isIntervals())
+            sb.append(intervalProver.report()).append("\n");
+        if (queryCache.isEnabled())
+            sb.append(queryCache.report()).append("\n");
+        if (queryCache.getStore() != null)
+            sb.append(queryCache.getStore().report()).append("\n");
+        if (options.isSlicing())
+            sb.append(premiseSlicer.report()).append("\n");
+        if (options.isCores() && queryCache.getStore() != null)
+            sb.append(premiseCores.report()).append("\n");
+        if (incrementalSolver != null)
+            sb.append(incrementalSolver.report()).append("\n");
+        if (options.isBatch())
+            sb.append(batchChecker.report()).append("\n");
+        if (options.isLogicSolvers())
+            sb.append(logicClassifier.report()).append("\n");
+        if (options.isStringAbstraction())
+            sb.append(stringAbstraction.report()).append("\n");
+        if (options.getPortfolioThreshold() > 0)
+            sb.append(portfolio.report()).append("\n");
+        if (backend.report() != null)
+            sb.append(backend.report()).append("\n");
+        if (queryDump != null)
+            sb.append(queryDump.report()).append("\n");
+        if (options.getFpEncoding() != FloatingPointEncoding.IEEE)
+            sb.append(floatingPointEncoder.report()).append("\n");
+        synchronized (this) {
+            if (!unknownResults.isEmpty()) {
+                sb.append("Unknown results: ").append(unknownResults.size()).append("\n");
+                for (String u : unknownResults)
+                    sb.append("  ").append(u).append("\n");
+            }
+        }
+        sb.append("---------------------------------------------------------------------");
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (incrementalSolver != null)
+                incrementalSolver.close();
+        }
+        if (queryCache.getStore() != null)
+            queryCache.getStore().close();
+        portfolio.close();
+        backend.close();
+        contextPool.close();
+        synchronized (VerificationSession.class) {
+            if (current == this)
+                current = null;
+        }
+    }
+}
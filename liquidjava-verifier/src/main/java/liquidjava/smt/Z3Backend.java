@@ -0,0 +1,92 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Params;
+import com.microsoft.z3.Solver;
+import com.microsoft.z3.Status;
+
+/** Solves the queries in process, with the z3 context they are built on */
+public class Z3Backend implements SolverBackend {
+
+    @Override
+    public BackendSolver mkSolver(com.microsoft.z3.Context z3, String logic) {
+        return new Z3Solver(z3, logic);
+    }
+
+    @Override
+    public String report() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static class Z3Solver implements BackendSolver {
+        private final com.microsoft.z3.Context z3;
+        private final Solver solver;
+
+        Z3Solver(com.microsoft.z3.Context z3, String logic) {
+            this.z3 = z3;
+            this.solver = logic == null ? z3.mkSolver() : z3.mkSolver(logic);
+        }
+
+        @Override
+        public void setLimits(long timeout, long rlimit) {
+            if (timeout <= 0 && rlimit <= 0)
+                return;
+            Params p = z3.mkParams();
+            if (timeout > 0)
+                p.add("timeout", (int) Math.min(timeout, Integer.MAX_VALUE));
+            if (rlimit > 0)
+                p.add("rlimit", (int) Math.min(rlimit, Integer.MAX_VALUE));
+            solver.setParameters(p);
+        }
+
+        @Override
+        public void add(BoolExpr assertion) {
+            // an array of the subclass, as a generic varargs array would be an unchecked creation
+            solver.add(new BoolExpr[] { assertion });
+        }
+
+        @Override
+        public void push() {
+            solver.push();
+        }
+
+        @Override
+        public void pop() {
+            solver.pop();
+        }
+
+        @Override
+        public void reset() {
+            solver.reset();
+        }
+
+        @Override
+        public Status check(BoolExpr... assumptions) {
+            return solver.check(assumptions);
+        }
+
+        @Override
+        public String getReasonUnknown() {
+            return solver.getReasonUnknown();
+        }
+
+        @Override
+        public void produceUnsatCores() {
+            // the cores of the assumptions are always kept
+        }
+
+        @Override
+        public BoolExpr[] getUnsatCore() {
+            return solver.getUnsatCore();
+        }
+
+        @Override
+        public void close() {
+            // the native solver is released with its context
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package liquidjava.smt;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps native z3 contexts alive between queries. Each borrowed context is used by a single query at a time, every
+ * query builds its own solver on it, and a context is closed after serving {@code maxReuse} queries so that the
+ * declarations accumulated in it do not grow without bound.
+ */
+public class Z3ContextPool implements AutoCloseable {
+
+    private final int maxIdle;
+    private final int maxReuse;
+    private final Deque<PooledContext> idle = new ArrayDeque<>();
+
+    private boolean closed;
+    private int created;
+    private int borrowed;
+    private int reused;
+    private int evicted;
+    private int peakInUse;
+    private int inUse;
+    // updated for every translated expression, by queries that may run in parallel
+    private final LongAdder translationsReused = new LongAdder();
+    private final LongAdder translations = new LongAdder();
+
+    public Z3ContextPool(int maxIdle, int maxReuse) {
+        this.maxIdle = Math.max(1, maxIdle);
+        this.maxReuse = Math.max(1, maxReuse);
+    }
+
+    public synchronized PooledContext borrow() {
+        if (closed)
+            throw new IllegalStateException("Z3 context pool already closed");
+        PooledContext pc = idle.pollFirst();
+        if (pc == null) {
+            pc = new PooledContext(this);
+            created++;
+        } else {
+            reused++;
+        }
+        borrowed++;
+        inUse++;
+        peakInUse = Math.max(peakInUse, inUse);
+        pc.markUsed();
+        return pc;
+    }
+
+    synchronized void release(PooledContext pc) {
+        inUse--;
+        if (closed || pc.isInterrupted() || pc.getUses() >= maxReuse || idle.size() >= maxIdle) {
+            pc.dispose();
+            evicted++;
+        } else {
+            idle.addFirst(pc);
+        }
+    }
+
+    void recordTranslation(boolean reused) {
+        translations.increment();
+        if (reused)
+            translationsReused.increment();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (PooledContext pc : idle)
+            pc.dispose();
+        idle.clear();
+    }
+
+    public synchronized int getCreated() {
+        return created;
+    }
+
+    public synchronized int getBorrowed() {
+        return borrowed;
+    }
+
+    public synchronized int getReused() {
+        return reused;
+    }
+
+    public synchronized int getEvicted() {
+        return evicted;
+    }
+
+    public synchronized String report() {
+        return String.format(
+                "Z3 context pool: size %d (max idle %d, peak in use %d), %d contexts created, %d borrows, %d reuses, "
+                        + "%d evictions",
+                idle.size(), maxIdle, peakInUse, created, borrowed, reused, evicted);
+    }
+
+    public String translationReport() {
+        long total = translations.sum();
+        long hits = translationsReused.sum();
+        return String.format("Translation memo: %d of %d compound expressions reused (%.1f%% hit rate)", hits, total,
+                total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+}
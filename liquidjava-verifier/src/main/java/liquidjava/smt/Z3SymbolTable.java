@@ -0,0 +1,184 @@
+package liquidjava.smt;
+
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.FPRMExpr;
+import com.microsoft.z3.FPSort;
+import com.microsoft.z3.FuncDecl;
+import com.microsoft.z3.Sort;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts, constants and function declarations of a z3 context, by java type and signature. Each one is created the first
+ * time a query asks for it and shared by all the following queries on the same {@link PooledContext}, which saves the
+ * calls into z3 that would create it again. Like its context, it is used by one query at a time.
+ */
+public class Z3SymbolTable {
+
+    private final Context z3;
+    private final boolean realFloatingPoint;
+    private final boolean stringTheory;
+    private final Map<String, Sort> variableSorts = new HashMap<>();
+    private final Map<String, Sort> ghostSorts = new HashMap<>();
+    private final Map<String, Expr<?>> constants = new HashMap<>();
+    private final Map<String, FuncDecl<?>> functions = new HashMap<>();
+    private final Map<String, Expr<?>> stringLiterals = new HashMap<>();
+    private Sort stringSort;
+    private FPSort fpSort64;
+    private FPRMExpr roundingMode;
+
+    /**
+     * @param z3
+     * @param realFloatingPoint
+     *            whether float and double are encoded as reals instead of IEEE 754 floating point
+     * @param stringTheory
+     *            whether strings are encoded with the string theory instead of as an uninterpreted sort
+     */
+    Z3SymbolTable(Context z3, boolean realFloatingPoint, boolean stringTheory) {
+        this.z3 = z3;
+        this.realFloatingPoint = realFloatingPoint;
+        this.stringTheory = stringTheory;
+    }
+
+    /** Whether strings are encoded with the string theory */
+    public boolean isStringTheory() {
+        return stringTheory;
+    }
+
+    /** Whether the java type is a string, as written in refinements or qualified */
+    public static boolean isString(String type) {
+        return type.equals("String") || type.equals("java.lang.String");
+    }
+
+    /** Whether float and double are encoded as reals */
+    public boolean isRealFloatingPoint() {
+        return realFloatingPoint;
+    }
+
+    /** Sort of a variable of the given java type */
+    public Sort getVariableSort(String type) {
+        Sort s = variableSorts.get(type);
+        if (s == null) {
+            s = mkVariableSort(type);
+            variableSorts.put(type, s);
+        }
+        return s;
+    }
+
+    private Sort mkVariableSort(String type) {
+        switch (type) {
+        case "int":
+        case "short":
+            return z3.getIntSort();
+        case "boolean":
+            return z3.getBoolSort();
+        case "long":
+            return z3.getRealSort();
+        case "float":
+        case "double":
+            return realFloatingPoint ? z3.getRealSort() : getFPSort64();
+        case "int[]":
+            return z3.mkArraySort(z3.mkIntSort(), z3.mkIntSort());
+        case "String":
+        case "java.lang.String":
+            return getStringSort();
+        default:
+            return z3.mkUninterpretedSort(type);
+        }
+    }
+
+    /** Sort of a parameter or result of a ghost of the given java type */
+    public Sort getGhostSort(String type) {
+        Sort s = ghostSorts.get(type);
+        if (s == null) {
+            s = mkGhostSort(type);
+            ghostSorts.put(type, s);
+        }
+        return s;
+    }
+
+    private Sort mkGhostSort(String sort) {
+        switch (sort) {
+        case "int":
+            return z3.getIntSort();
+        case "boolean":
+            return z3.getBoolSort();
+        case "long":
+            return z3.getRealSort();
+        case "float":
+            return realFloatingPoint ? z3.getRealSort() : z3.mkFPSort32();
+        case "double":
+            return realFloatingPoint ? z3.getRealSort() : getFPSort64();
+        case "int[]":
+            return z3.mkArraySort(z3.mkIntSort(), z3.mkIntSort());
+        case "String":
+        case "java.lang.String":
+            return getStringSort();
+        case "void":
+            return z3.mkUninterpretedSort("void");
+        // case "List":return z3.mkListSort(name, elemSort)
+        default:
+            return z3.mkUninterpretedSort(sort);
+        }
+    }
+
+    /** Constant for a variable with the given name and java type */
+    public Expr<?> getConstant(String name, String type) {
+        String key = name + ":" + type;
+        Expr<?> e = constants.get(key);
+        if (e == null) {
+            e = z3.mkConst(name, getVariableSort(type));
+            constants.put(key, e);
+        }
+        return e;
+    }
+
+    /** Declaration of a function with the given name and the sorts of ghosts of the given java types */
+    public FuncDecl<?> getFunction(String name, List<String> parameterTypes, String returnType) {
+        String key = name + parameterTypes + returnType;
+        FuncDecl<?> fd = functions.get(key);
+        if (fd == null) {
+            Sort[] domain = parameterTypes.stream().map(this::getGhostSort).toArray(Sort[]::new);
+            fd = z3.mkFuncDecl(name, domain, getGhostSort(returnType));
+            functions.put(key, fd);
+        }
+        return fd;
+    }
+
+    /** Sort of the strings, the one of the string theory or an uninterpreted one */
+    public Sort getStringSort() {
+        if (stringSort == null)
+            // '!' cannot appear in java type names, so no class is translated to the same sort
+            stringSort = stringTheory ? z3.getStringSort() : z3.mkUninterpretedSort("String!");
+        return stringSort;
+    }
+
+    /**
+     * The string literal, a constant of the uninterpreted sort with the same name for the same literal when strings are
+     * not encoded with the string theory
+     */
+    public Expr<?> getStringLiteral(String value) {
+        if (stringTheory)
+            return z3.mkString(value);
+        Expr<?> e = stringLiterals.get(value);
+        if (e == null) {
+            e = z3.mkConst("string!" + stringLiterals.size(), getStringSort());
+            stringLiterals.put(value, e);
+        }
+        return e;
+    }
+
+    public FPSort getFPSort64() {
+        if (fpSort64 == null)
+            fpSort64 = z3.mkFPSort64();
+        return fpSort64;
+    }
+
+    public FPRMExpr getRoundNearestTiesToEven() {
+        if (roundingMode == null)
+            roundingMode = z3.mkFPRoundNearestTiesToEven();
+        return roundingMode;
+    }
+}
@@ -0,0 +1,60 @@
+package liquidjava.api.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import liquidjava.api.CommandLineLauncher;
+import liquidjava.api.QueryReplay;
+import liquidjava.smt.VerificationOptions;
+import liquidjava.smt.VerificationSession;
+import org.junit.jupiter.api.Test;
+
+/** Dumps the queries of a verification and replays them */
+public class QueryReplayTest {
+
+    private static final String TEST_SUITE = "../liquidjava-example/src/main/java/testSuite/";
+
+    /** Every dumped query, valid or not, gets the verdict it was dumped with when it is replayed */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("liquidjava-dump");
+        try {
+            VerificationOptions options = new VerificationOptions();
+            options.setDumpDir(dir.toString());
+            // the obligations go to z3 one by one
+            options.setFastPath(false);
+            options.setIntervals(false);
+            options.setBatch(false);
+            try (VerificationSession session = VerificationSession.open(options)) {
+                for (String file : new String[] { "CorrectIfThen.java", "ErrorArithmeticFP1.java" })
+                    CommandLineLauncher.launch(Paths.get(TEST_SUITE, file).toAbsolutePath().toString(), session);
+            }
+            long dumped;
+            try (Stream<Path> files = Files.list(dir)) {
+                dumped = files.filter(p -> p.toString().endsWith(".smt2")).count();
+            }
+            assertTrue(dumped > 0);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+                assertEquals(0, QueryReplay.run(dir, 0, out), () -> bytes.toString(StandardCharsets.UTF_8));
+            }
+            String table = bytes.toString(StandardCharsets.UTF_8);
+            assertTrue(table.contains(" unsat    unsat ") && table.contains(" sat      sat "), table);
+            assertTrue(table.contains(dumped + " queries,") && table.contains(", 0 verdicts changed"), table);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package liquidjava.rj_language.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import liquidjava.processor.facade.AliasDTO;
+import liquidjava.processor.facade.GhostDTO;
+import liquidjava.rj_language.ast.Expression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Differential tests of the {@link PrecedenceParser} against the ANTLR grammar, which stays the reference */
+public class PrecedenceParserTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "x > 0", "a - b + c", "a + b * c - d / e % f", "-a + b", "!a + b > 0", "!a == b",
+            "!a && b", "a && b || c --> d", "a ? b : c ? d : e", "a ? b : c && d", "a && b ? c : d", "(x) + 1 > 0",
+            "(a > 0) && b", "((a))", "(!a) + 1 > 0", "-(a) > 0", "a == -b", "a == !b && c", "f(x, y > 1) == g()",
+            "Len(a) && b", "size(this) == size(old(this)) + 1", "x >= 0.5 && y < .25", "s == \"a b\"", "v == 1000",
+            "#fresh_1 == _x#2", "true && false || trueX", "a-->b", "a --- b > 0", "f(a ? 1 : 2) * 3 > 0", "!(a == b)",
+            "!!a", "integer + double1 > 0" })
+    public void testRefinement(String text) throws ParsingException {
+        Expression direct = PrecedenceParser.parsePredicate(text);
+        assertNotNull(direct, text);
+        assertEquals(RefinementsParser.parseWithGrammar(text), direct, text);
+        assertEquals(RefinementsParser.parseWithGrammar(text).toString(), direct.toString(), text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "x > 0 )", "a > 0 b", "x = 1", "x.len(y) > 0", "(a && b) + 1 > 0", "a + (b > 0)",
+            "-(a > 0)", "x == (a ? 1 : 2) * 3", "Foo > 0", "int x", "\"open", "x > 0 @", "RGB(int x) {x > 0}",
+            "this.x > 0" })
+    public void testLeftToGrammar(String text) {
+        assertNull(PrecedenceParser.parsePredicate(text), text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "int size", "ghost boolean open", "int f(int, double x)", "int[] [] items()",
+            "java.lang.String name(Foo[] a, boolean)", "Foo g(java.util.List)" })
+    public void testGhost(String text) throws ParsingException {
+        GhostDTO direct = PrecedenceParser.parseGhost(text);
+        assertNotNull(direct, text);
+        assertGhostEquals(RefinementsParser.getGhostDeclarationWithGrammar(text), direct, text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "Positive(int x) { x > 0}", "type PtGrade(double x) { x >= 0 && x <= 20}",
+            "EmptyEmail (Email e) { state(e) == 1}", "InRange(int val, int low, int up) {low < val  &&\n val < up }" })
+    public void testAlias(String text) throws ParsingException {
+        AliasDTO direct = PrecedenceParser.parseAlias(text);
+        assertNotNull(direct, text);
+        assertAliasEquals(RefinementsParser.getAliasDeclarationWithGrammar(text), direct, text);
+    }
+
+    /** Every string of the examples, as a refinement and as a ghost and alias declaration */
+    @Test
+    public void testExampleStrings() throws IOException {
+        List<String> strings = new ArrayList<>();
+        Pattern literal = Pattern.compile("\"((?:[^\"\\\\\\n]|\\\\.)*)\"");
+        try (Stream<Path> files = Files.walk(Paths.get("../liquidjava-example/src/main/java/"))) {
+            for (Path f : files.filter(f -> f.toString().endsWith(".java")).collect(Collectors.toList())) {
+                Matcher m = literal.matcher(Files.readString(f));
+                while (m.find())
+                    strings.add(m.group(1).replace("\\\"", "\"").replace("\\\\", "\\"));
+            }
+        }
+        for (String s : strings)
+            assertAgreement(s);
+    }
+
+    /** Random texts made of the tokens of the language, most of which are not well-formed */
+    @Test
+    public void testRandomTokens() {
+        String[] tokens = { "(", ")", "!", "?", ":", "-", ",", ".", "&&", "||", "-->", "==", "!=", ">=", ">", "<=", "<",
+                "+", "*", "/", "%", "x", "y", "f", "Len", "true", "1", "2.5", ".5", "\"s\"", "int", "{", "}", "[]", "=",
+                "this" };
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++)
+                sb.append(tokens[random.nextInt(tokens.length)]).append(random.nextBoolean() ? " " : "");
+            assertAgreement(sb.toString());
+        }
+    }
+
+    /** Random refinements, with every operator and the parentheses in any position */
+    @Test
+    public void testRandomRefinements() {
+        Random random = new Random(7);
+        int accepted = 0;
+        for (int i = 0; i < 5000; i++) {
+            String text = randomExpression(random, 4);
+            assertAgreement(text);
+            if (PrecedenceParser.parsePredicate(text) != null)
+                accepted++;
+        }
+        // the others mix the rules in ways the grammar does not parse either
+        assertTrue(accepted > 2500, accepted + " accepted");
+    }
+
+    private static String randomExpression(Random random, int depth) {
+        String[] atoms = { "x", "y", "1", "2.5", "true", "f(x)", "Len(x, y)", "g()" };
+        String[] binary = { "&&", "||", "-->", "==", "!=", ">=", "<", "+", "*", "/", "%", "-" };
+        if (depth == 0)
+            return atoms[random.nextInt(atoms.length)];
+        switch (random.nextInt(6)) {
+        case 0:
+            return "(" + randomExpression(random, depth - 1) + ")";
+        case 1:
+            return (random.nextBoolean() ? "!" : "-") + randomExpression(random, depth - 1);
+        case 2:
+            return randomExpression(random, depth - 1) + " ? " + randomExpression(random, depth - 1) + " : "
+                    + randomExpression(random, depth - 1);
+        case 3:
+            return atoms[random.nextInt(atoms.length)];
+        default:
+            return randomExpression(random, depth - 1) + " " + binary[random.nextInt(binary.length)] + " "
+                    + randomExpression(random, depth - 1);
+        }
+    }
+
+    /** What the hand-written parser accepts, the grammar parses into the same expression or declaration */
+    private static void assertAgreement(String text) {
+        Expression direct = PrecedenceParser.parsePredicate(text);
+        if (direct != null) {
+            try {
+                assertEquals(RefinementsParser.parseWithGrammar(text), direct, text);
+            } catch (ParsingException e) {
+                throw new AssertionError("accepted a text the grammar rejects: " + text, e);
+            }
+        }
+        GhostDTO ghost = PrecedenceParser.parseGhost(text);
+        if (ghost != null) {
+            try {
+                assertGhostEquals(RefinementsParser.getGhostDeclarationWithGrammar(text), ghost, text);
+            } catch (ParsingException e) {
+                throw new AssertionError("accepted a ghost the grammar rejects: " + text, e);
+            }
+        }
+        try {
+            AliasDTO alias = PrecedenceParser.parseAlias(text);
+            if (alias != null)
+                assertAliasEquals(RefinementsParser.getAliasDeclarationWithGrammar(text), alias, text);
+        } catch (ParsingException e) {
+            throw new AssertionError("accepted an alias the grammar rejects: " + text, e);
+        }
+    }
+
+    private static void assertGhostEquals(GhostDTO expected, GhostDTO actual, String text) {
+        assertEquals(expected.getName(), actual.getName(), text);
+        assertEquals(expected.getReturn_type(), actual.getReturn_type(), text);
+        assertEquals(expected.getParam_types(), actual.getParam_types(), text);
+    }
+
+    private static void assertAliasEquals(AliasDTO expected, AliasDTO actual, String text) {
+        assertNotNull(expected, text);
+        assertEquals(expected.getName(), actual.getName(), text);
+        assertEquals(expected.getVarTypes(), actual.getVarTypes(), text);
+        assertEquals(expected.getVarNames(), actual.getVarNames(), text);
+        assertEquals(expected.getExpression(), actual.getExpression(), text);
+    }
+}
@@ -0,0 +1,81 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import liquidjava.api.CommandLineLauncher;
+import liquidjava.errors.ErrorEmitter;
+import org.junit.jupiter.api.Test;
+
+/** Verifies examples with the floating point terms over reals, whose verdicts the default IEEE 754 runs never see */
+public class FloatingPointEncodingTest {
+
+    private static final String TEST_SUITE = "../liquidjava-example/src/main/java/testSuite/";
+
+    /** The batched obligations over reals go through the hybrid fallback, as they do one by one */
+    @Test
+    public void testBatchedCallUnderHybrid() {
+        VerificationOptions options = new VerificationOptions();
+        options.setFpEncoding(FloatingPointEncoding.HYBRID);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(path("CorrectFPBatchedArguments.java"), session);
+            assertFalse(ee.foundError(), () -> ee.getFullMessage());
+        }
+    }
+
+    /** Reals miss the rounding of 0.1 + 0.2, so they cannot prove the refinement of y */
+    @Test
+    public void testRealsMissRounding() {
+        VerificationOptions options = new VerificationOptions();
+        options.setFpEncoding(FloatingPointEncoding.REAL);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(path("CorrectFPRounding.java"), session);
+            assertTrue(ee.foundError(), "proved over reals");
+        }
+    }
+
+    /** The hybrid encoding checks again with IEEE 754 the obligation that reals do not prove, which then holds */
+    @Test
+    public void testHybridFallsBackToIeee() {
+        VerificationOptions options = new VerificationOptions();
+        options.setFpEncoding(FloatingPointEncoding.HYBRID);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(path("CorrectFPRounding.java"), session);
+            assertFalse(ee.foundError(), () -> ee.getFullMessage());
+            String report = session.getFloatingPointEncoder().report();
+            assertTrue(report.contains("1 methods switched to IEEE 754"), report);
+            assertTrue(
+                    report.contains("CorrectFPRounding.java:13 in testSuite.CorrectFPRounding.main(java.lang.String[]):"
+                            + " unsat with IEEE 754"),
+                    report);
+        }
+    }
+
+    /**
+     * The sliced attempt drops the premises that make the branch dead and cannot prove the refinement of y, which
+     * decides nothing: the obligation is proved over reals with all its premises and the method keeps them
+     */
+    @Test
+    public void testSlicedAttemptDoesNotFallBack() {
+        VerificationOptions options = new VerificationOptions();
+        options.setFpEncoding(FloatingPointEncoding.HYBRID);
+        // the obligation goes to z3, sliced first
+        options.setFastPath(false);
+        options.setIntervals(false);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(path("CorrectFPDeadBranch.java"), session);
+            assertFalse(ee.foundError(), () -> ee.getFullMessage());
+            String slicing = session.getPremiseSlicer().report();
+            assertTrue(slicing.contains("1 fallbacks to all premises"), slicing);
+            String report = session.getFloatingPointEncoder().report();
+            assertTrue(report.startsWith(
+                    "Floating point encoding: hybrid, 1 obligations decided over reals, 0 with IEEE 754, 0 methods switched"),
+                    report);
+        }
+    }
+
+    private static String path(String file) {
+        return Paths.get(TEST_SUITE, file).toAbsolutePath().toString();
+    }
+}
@@ -0,0 +1,90 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import liquidjava.api.CommandLineLauncher;
+import liquidjava.errors.ErrorEmitter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** Verifies the examples on the persistent solver of incremental mode, which the default runs never use */
+public class IncrementalSolverTest {
+
+    private static final String TEST_SUITE = "../liquidjava-example/src/main/java/testSuite/";
+    private static final Pattern REPORT = Pattern.compile(
+            "Incremental solver: (\\d+) checks, (\\d+) premises asserted, (\\d+) reused \\([^)]*\\), (\\d+) resets");
+
+    /**
+     * Every obligation goes to the persistent solver, which is reset whenever it would hold more than a few premises,
+     * so that the premises asserted before a reset are asserted again when a later obligation needs them
+     */
+    @ParameterizedTest
+    @MethodSource("examples")
+    public void testExample(Path file) {
+        String name = file.getFileName().toString();
+        VerificationOptions options = new VerificationOptions();
+        options.setIncremental(true);
+        options.setIncrementalMaxPremises(8);
+        options.setFastPath(false);
+        options.setIntervals(false);
+        options.setBatch(false);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(file.toAbsolutePath().toString(), session);
+            assertEquals(name.startsWith("Error") || name.contains("error"), ee.foundError(),
+                    () -> name + ": " + ee.getFullMessage());
+        }
+    }
+
+    /** The premises shared by the obligations are reused until the limit resets the solver */
+    @Test
+    public void testReuseAndReset() {
+        long[] unlimited = verify(5000);
+        assertTrue(unlimited[0] > 0 && unlimited[2] > 0 && unlimited[3] == 0, () -> report(unlimited));
+        long[] limited = verify(8);
+        assertEquals(unlimited[0], limited[0], () -> report(limited));
+        assertTrue(limited[3] > 0 && limited[1] > unlimited[1], () -> report(limited));
+    }
+
+    /** Checks, premises asserted, premises reused and resets of the incremental solver on CorrectIfThen */
+    private static long[] verify(int maxPremises) {
+        VerificationOptions options = new VerificationOptions();
+        options.setIncremental(true);
+        options.setIncrementalMaxPremises(maxPremises);
+        options.setFastPath(false);
+        options.setIntervals(false);
+        options.setBatch(false);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher
+                    .launch(Paths.get(TEST_SUITE, "CorrectIfThen.java").toAbsolutePath().toString(), session);
+            assertFalse(ee.foundError(), () -> ee.getFullMessage());
+            String report = session.getIncrementalSolver().report();
+            Matcher m = REPORT.matcher(report);
+            assertTrue(m.find(), report);
+            return new long[] { Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), Long.parseLong(m.group(3)),
+                    Long.parseLong(m.group(4)) };
+        }
+    }
+
+    private static String report(long[] counts) {
+        return String.format("%d checks, %d premises asserted, %d reused, %d resets", counts[0], counts[1], counts[2],
+                counts[3]);
+    }
+
+    private static Stream<Path> examples() throws IOException {
+        return Files.find(Paths.get(TEST_SUITE), Integer.MAX_VALUE, (filePath, fileAttr) -> {
+            String name = filePath.getFileName().toString();
+            return (fileAttr.isRegularFile() && (name.startsWith("Correct") || name.startsWith("Error")))
+                    || (fileAttr.isDirectory() && (name.contains("correct") || name.contains("error")));
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import liquidjava.processor.context.Context;
+import liquidjava.processor.context.Variable;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.parsing.ParsingException;
+import liquidjava.rj_language.parsing.RefinementsParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import spoon.Launcher;
+import spoon.reflect.factory.TypeFactory;
+
+/**
+ * Obligations, written as premises;goal, that the {@link IntervalProver} proves and that it leaves to z3, over the int
+ * variables x, y, z and a0 to a9 and the double variable d
+ */
+public class IntervalProverTest {
+
+    private Context c;
+
+    @BeforeEach
+    public void setUp() {
+        c = Context.getInstance();
+        c.reinitializeAllContext();
+        // local variables, since no run clears the global ones
+        TypeFactory types = new Launcher().getFactory().Type();
+        for (String name : List.of("x", "y", "z"))
+            c.addVarToContext(new Variable(name, types.integerPrimitiveType(), new Predicate()));
+        for (int i = 0; i <= IntervalProver.MAX_ROUNDS + 1; i++)
+            c.addVarToContext(new Variable("a" + i, types.integerPrimitiveType(), new Predicate()));
+        c.addVarToContext(new Variable("d", types.doublePrimitiveType(), new Predicate()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        c.reinitializeAllContext();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            // bounds carried from one constraint to the next
+            "x >= 1 && y >= x + 2 && z == y + x; z >= 4", "x + y <= 10 && x >= 3 && y >= 4; x <= 6",
+            "z == x - y && x <= 4 && y >= 1; z <= 3", "x == 5 && y == 2 * x; y == 10 && y != 11",
+            "x > 0 && y > x; y >= 2", "x >= 2; x > 5 || x >= 2",
+            // negative coefficients, rounded towards the feasible integers
+            "-x >= 2; x <= -2", "0 - x > 3; x < -3", "-2 * x >= -10; x <= 5", "-3 * x <= 7; x >= -2",
+            "x * -2 < 5; x > -3", "y - (2 * x) >= 0 && y <= 6; x <= 3",
+            // contradictory premises prove anything
+            "x > 5 && x < 3; y == 7", "x >= 0 && y >= 0 && x + y < 0; z > 100" })
+    public void testProved(String premises, String goal) throws ParsingException {
+        assertTrue(new IntervalProver().proves(predicate(premises), predicate(goal), c), premises + " ==> " + goal);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            // bounds that do not imply the goal
+            "x >= 0 && y >= 0; x + y >= 1", "x > 0; x > 1", "x >= 0 && x <= 10; x != 5", "-3 * x <= 7; x >= -1",
+            "x + y <= 10; x <= 10", "x <= 5; x > 5 || x < 0",
+            // premises that are not linear comparisons of integers are left out
+            "x != 0 && x >= 0; x > 0", "x * y >= 1 && x <= 0; y < 0", "x >= 1 || x <= -1; x != 0", "d > 5; d > 4",
+            "x == d && d > 5; x > 4" })
+    public void testNotProved(String premises, String goal) throws ParsingException {
+        assertFalse(new IntervalProver().proves(predicate(premises), predicate(goal), c), premises + " ==> " + goal);
+    }
+
+    /**
+     * Each round of propagation moves the bound of a0 one link up the chain a1 <= a0, a2 <= a1, ..., which is listed in
+     * the opposite order, so the terms past the last round keep no bound
+     */
+    @Test
+    public void testPropagationStopsAfterMaxRounds() throws ParsingException {
+        int n = IntervalProver.MAX_ROUNDS + 1;
+        List<String> chain = new ArrayList<>();
+        for (int i = n; i > 0; i--)
+            chain.add("a" + i + " <= a" + (i - 1));
+        chain.add("a0 <= 0");
+        Predicate premises = predicate(String.join(" && ", chain));
+        IntervalProver prover = new IntervalProver();
+        assertTrue(prover.proves(premises, predicate("a" + (n - 2) + " <= 0"), c));
+        assertFalse(prover.proves(premises, predicate("a" + (n - 1) + " <= 0"), c));
+        assertFalse(prover.proves(premises, predicate("a" + n + " <= 0"), c));
+    }
+
+    private static Predicate predicate(String text) throws ParsingException {
+        return new Predicate(RefinementsParser.createAST(text));
+    }
+}
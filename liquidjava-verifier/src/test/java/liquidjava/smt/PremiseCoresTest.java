@@ -0,0 +1,57 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import liquidjava.api.CommandLineLauncher;
+import liquidjava.errors.ErrorEmitter;
+import org.junit.jupiter.api.Test;
+
+/** Records the unsat cores of a run and checks the obligations of the next run with them first */
+public class PremiseCoresTest {
+
+    private static final String TEST_SUITE = "../liquidjava-example/src/main/java/testSuite/";
+
+    /** The obligations proved in the batch of a call get their cores, which the next run checks first */
+    @Test
+    public void testBatchedCallCores() throws IOException {
+        Path dir = Files.createTempDirectory("liquidjava-cores");
+        try {
+            String first = verify(dir);
+            assertTrue(first.contains("1 batches of 3 obligations"), first);
+            assertTrue(first.contains("Unsat cores: 5 extracted"), first);
+            // a new build of the verifier has none of the verdicts, but the cores are shared
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator)
+                    if (f.getFileName().toString().startsWith("verdicts-"))
+                        Files.delete(f);
+            }
+            String second = verify(dir);
+            assertTrue(second.contains("5 obligations checked with their core first, 5 proved"), second);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static String verify(Path dir) {
+        VerificationOptions options = new VerificationOptions();
+        options.setCacheDir(dir.toString());
+        // the obligations go to z3, in the batch of the call
+        options.setFastPath(false);
+        options.setIntervals(false);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher
+                    .launch(Paths.get(TEST_SUITE, "CorrectBatchedArguments.java").toAbsolutePath().toString(), session);
+            assertFalse(ee.foundError(), () -> ee.getFullMessage());
+            return session.getPremiseCores().report() + "\n" + session.getBatchChecker().report();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.IntExpr;
+import com.microsoft.z3.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import liquidjava.api.CommandLineLauncher;
+import liquidjava.errors.ErrorEmitter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Runs the pipe backend against {@link liquidjava.api.SmtLibServer}, started with the classpath of the tests */
+public class SmtLibPipeBackendTest {
+
+    private static final String TEST_SUITE = "../liquidjava-example/src/main/java/testSuite/";
+
+    private static List<String> serverCommand() {
+        return List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp",
+                System.getProperty("java.class.path"), "liquidjava.api.SmtLibServer");
+    }
+
+    /** Examples with batched calls, floating point terms and strings, verified with every query sent to the server */
+    @ParameterizedTest
+    @ValueSource(strings = { "CorrectBatchedArguments.java", "ErrorBatchedArguments.java", "CorrectFPArithmetic.java",
+            "ErrorArithmeticFP1.java", "CorrectStringEquality.java", "ErrorStringEquality.java",
+            "CorrectFunctionInvocation.java", "ErrorFunctionInvocation.java" })
+    public void testExample(String file) {
+        VerificationOptions options = new VerificationOptions();
+        options.setSolverCommand(String.join(" ", serverCommand()));
+        try (VerificationSession session = VerificationSession.open(options)) {
+            ErrorEmitter ee = CommandLineLauncher.launch(Paths.get(TEST_SUITE, file).toAbsolutePath().toString(),
+                    session);
+            assertEquals(file.startsWith("Error"), ee.foundError(), () -> file + ": " + ee.getFullMessage());
+            String report = session.getBackend().report();
+            assertTrue(report.contains("1 starts") && !report.contains(" 0 checks"), report);
+        }
+    }
+
+    /** With a cache directory the cores of the proved obligations are extracted through the pipe */
+    @Test
+    public void testExampleWithCores() throws IOException {
+        Path dir = Files.createTempDirectory("liquidjava-cores");
+        try {
+            VerificationOptions options = new VerificationOptions();
+            options.setSolverCommand(String.join(" ", serverCommand()));
+            options.setCacheDir(dir.toString());
+            // every obligation goes to the solver on its own
+            options.setFastPath(false);
+            options.setIntervals(false);
+            options.setBatch(false);
+            try (VerificationSession session = VerificationSession.open(options)) {
+                ErrorEmitter ee = CommandLineLauncher.launch(
+                        Paths.get(TEST_SUITE, "CorrectFunctionInvocation.java").toAbsolutePath().toString(), session);
+                assertFalse(ee.foundError(), () -> ee.getFullMessage());
+                String report = session.getPremiseCores().report();
+                assertFalse(report.startsWith("Unsat cores: 0 extracted"), report);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /** A solver sends its assertions again after another solver reset the process */
+    @Test
+    public void testReplayAfterReset() {
+        try (SmtLibPipeBackend backend = new SmtLibPipeBackend(serverCommand()); Context z3 = new Context()) {
+            IntExpr x = z3.mkIntConst("x");
+            IntExpr y = z3.mkIntConst("y");
+            try (BackendSolver first = backend.mkSolver(z3); BackendSolver second = backend.mkSolver(z3)) {
+                first.add(z3.mkGt(x, z3.mkInt(0)));
+                assertEquals(Status.SATISFIABLE, first.check());
+
+                second.add(z3.mkLt(y, z3.mkInt(0)));
+                assertEquals(Status.SATISFIABLE, second.check());
+
+                // unsat only with x > 0, which the process lost on the reset for the second solver
+                first.add(z3.mkLt(x, z3.mkInt(0)));
+                assertEquals(Status.UNSATISFIABLE, first.check());
+
+                second.push();
+                second.add(z3.mkGt(y, z3.mkInt(0)));
+                assertEquals(Status.UNSATISFIABLE, second.check());
+                second.pop();
+                assertEquals(Status.SATISFIABLE, second.check());
+            }
+            String report = backend.report();
+            assertTrue(report.contains("1 starts") && report.contains("2 replays after a reset"), report);
+        }
+    }
+
+    /** The unsat core names the guards of the contradicting premises only */
+    @Test
+    public void testUnsatCore() {
+        try (SmtLibPipeBackend backend = new SmtLibPipeBackend(serverCommand()); Context z3 = new Context()) {
+            IntExpr x = z3.mkIntConst("x");
+            IntExpr y = z3.mkIntConst("y");
+            BoolExpr[] guards = { z3.mkBoolConst("premise!0"), z3.mkBoolConst("premise!1"),
+                    z3.mkBoolConst("premise!2") };
+            try (BackendSolver solver = backend.mkSolver(z3); BackendSolver other = backend.mkSolver(z3)) {
+                solver.produceUnsatCores();
+                solver.add(z3.mkImplies(guards[0], z3.mkGt(x, z3.mkInt(0))));
+                solver.add(z3.mkImplies(guards[1], z3.mkGt(y, z3.mkInt(0))));
+                solver.add(z3.mkImplies(guards[2], z3.mkLt(x, z3.mkInt(0))));
+                assertEquals(Status.UNSATISFIABLE, solver.check(guards));
+                BoolExpr[] core = solver.getUnsatCore();
+                Arrays.sort(core, Comparator.comparing(BoolExpr::toString));
+                assertArrayEquals(new BoolExpr[] { guards[0], guards[2] }, core);
+
+                // the core of the last check is gone once another solver used the process
+                other.add(z3.mkGt(y, z3.mkInt(0)));
+                assertEquals(Status.SATISFIABLE, other.check());
+                assertThrows(IllegalStateException.class, solver::getUnsatCore);
+
+                // and the solver replays its assertions, with cores still on, to check again
+                assertEquals(Status.UNSATISFIABLE, solver.check(guards[0], guards[2]));
+                assertEquals(2, solver.getUnsatCore().length);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.microsoft.z3.Status;
+import liquidjava.processor.context.Context;
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.parsing.RefinementsParser;
+import org.junit.jupiter.api.Test;
+
+/** Races queries on the configurations of the portfolio */
+public class SolverPortfolioTest {
+
+    /** Without a time limit the race still returns as soon as the first configuration decides the query */
+    @Test
+    public void testRaceWithoutTimeout() throws Exception {
+        VerificationOptions options = new VerificationOptions();
+        options.setTimeout(0);
+        try (VerificationSession session = VerificationSession.open(options)) {
+            Context c = Context.getInstance();
+            c.reinitializeAllContext();
+            SolverPortfolio portfolio = session.getPortfolio();
+            assertEquals(Status.UNSATISFIABLE,
+                    portfolio.race(predicate("1 + (2 * 3) == 8"), c, FloatingPointEncoding.IEEE).status);
+            assertEquals(Status.SATISFIABLE,
+                    portfolio.race(predicate("1 + (2 * 3) == 7"), c, FloatingPointEncoding.IEEE).status);
+            String report = portfolio.report();
+            assertTrue(report.startsWith("Solver portfolio: 2 races, 0 undecided"), report);
+        }
+    }
+
+    /** The configurations translate the floating point terms with the encoding they are given */
+    @Test
+    public void testRaceWithEncoding() throws Exception {
+        try (VerificationSession session = VerificationSession.open(new VerificationOptions())) {
+            Context c = Context.getInstance();
+            c.reinitializeAllContext();
+            SolverPortfolio portfolio = session.getPortfolio();
+            // 0.1 + 0.2 rounds to 0.30000000000000004, which reals do not see
+            SolverPortfolio.Result real = portfolio.race(predicate("0.1 + 0.2 != 0.3"), c, FloatingPointEncoding.REAL);
+            assertEquals(Status.UNSATISFIABLE, real.status);
+            assertTrue(real.approximatesFloatingPoint);
+            SolverPortfolio.Result ieee = portfolio.race(predicate("0.1 + 0.2 != 0.3"), c, FloatingPointEncoding.IEEE);
+            assertEquals(Status.SATISFIABLE, ieee.status);
+            assertTrue(ieee.usesFloatingPoint && !ieee.approximatesFloatingPoint);
+        }
+    }
+
+    private static Predicate predicate(String text) throws Exception {
+        return new Predicate(RefinementsParser.createAST(text));
+    }
+}
@@ -0,0 +1,51 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import liquidjava.rj_language.Predicate;
+import liquidjava.rj_language.parsing.ParsingException;
+import liquidjava.rj_language.parsing.RefinementsParser;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/** Obligations, written as premises;goal, that the {@link SyntacticProver} proves and that it leaves to z3 */
+public class SyntacticProverTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            // the goal is a premise, up to parentheses
+            "x > y && a == b; a == b", "(x > 0) && (y < 2); y < 2 && x > 0",
+            // constants that fold
+            "x > 0; (2 * 3) + 1 == 7", "x > 0; 0.5 + 0.25 < 1", "x > 0; !(1 > 2) || y > 0",
+            "x > 0; 3 > 2 ? true : y > 0", "x > 0 && (1 > 2); y == 3",
+            // bounds of the same term
+            "x > 5; x >= 5", "x > 5; x > 4", "x >= 5; x > 4.5", "x == 5; x <= 5", "x < 5; x != 5", "x > 5; x != 3",
+            "10 >= x; x < 11", "5 < x; x > 5", "x + y >= 10; x + y > 9", "len(a) > 0; len(a) >= 0",
+            // goals made of other goals
+            "x > 5 && y == 1; x >= 5 && y == 1", "y == 1; x > 5 || y == 1", "x > 5; y > 0 --> x > 4",
+            "x > 0; x > 5 --> x > 4" })
+    public void testProved(String premises, String goal) throws ParsingException {
+        assertTrue(new SyntacticProver().proves(predicate(premises), predicate(goal)), premises + " ==> " + goal);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            // bounds the wrong way
+            "x < 5; x > 5", "x > 5; x < 10", "x <= 5; x >= 5", "5 > x; x > 5",
+            // off by one, and integer steps the prover does not take
+            "x >= 5; x > 5", "x > 5; x >= 6", "x <= 5; x < 5", "x != 5; x > 5",
+            // the goal only appears inside a disjunction of the premises
+            "x == 1 || y == 2; y == 2", "(x > 5 || y > 5) && z == 0; x > 5",
+            // bounds of another term, or needing arithmetic on the premises
+            "y > 5; x > 5", "x > 5 && y > 5; x + y > 10", "x == y && y > 5; x > 5",
+            // folds to false, and reflexivity, which does not hold for NaN
+            "x > 0; 1 + 1 == 3", "x > 0; x == x", "x > 5; y > 0 --> x > 6" })
+    public void testNotProved(String premises, String goal) throws ParsingException {
+        assertFalse(new SyntacticProver().proves(predicate(premises), predicate(goal)), premises + " ==> " + goal);
+    }
+
+    private static Predicate predicate(String text) throws ParsingException {
+        return new Predicate(RefinementsParser.createAST(text));
+    }
+}
@@ -0,0 +1,110 @@
+package liquidjava.smt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.microsoft.z3.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Writes verdicts and unsat cores to a directory and reads them back as the next runs would */
+public class VerdictStoreTest {
+
+    private static final String BUILD = "0123456789abcdef";
+    private static final String Z3 = "Z3 4.12.2.0";
+
+    private Path dir;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("liquidjava-verdicts");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        write();
+        try (VerdictStore store = VerdictStore.open(dir, BUILD, Z3)) {
+            assertEquals(Status.UNSATISFIABLE, store.get("a"));
+            assertEquals(Status.SATISFIABLE, store.get("b"));
+            assertNull(store.get("c"));
+            assertArrayEquals(new int[] { 0, 2 }, store.getCore("a"));
+            assertArrayEquals(new int[0], store.getCore("b"));
+            assertNull(store.getCore("c"));
+            String report = store.report();
+            assertTrue(report.endsWith("2 verdicts loaded, 0 appended, 2 unsat cores loaded, 0 appended"), report);
+        }
+    }
+
+    /** The verdicts of another build of the verifier or another version of z3 are not reused, the cores are */
+    @Test
+    public void testOtherBuildOrZ3() throws IOException {
+        write();
+        try (VerdictStore store = VerdictStore.open(dir, "fedcba9876543210", Z3)) {
+            assertNull(store.get("a"));
+            assertNull(store.get("b"));
+            assertArrayEquals(new int[] { 0, 2 }, store.getCore("a"));
+        }
+        try (VerdictStore store = VerdictStore.open(dir, BUILD, "Z3 4.13.0.0")) {
+            assertNull(store.get("a"));
+            assertNull(store.get("b"));
+            assertArrayEquals(new int[] { 0, 2 }, store.getCore("a"));
+        }
+    }
+
+    /** A last record without its line terminator, as left by a process still writing it or killed while doing so */
+    @Test
+    public void testTruncatedLastRecord() throws IOException {
+        write();
+        truncate(log("verdicts-"), 1);
+        truncate(log("cores-"), 3);
+        try (VerdictStore store = VerdictStore.open(dir, BUILD, Z3)) {
+            assertEquals(Status.UNSATISFIABLE, store.get("a"));
+            assertNull(store.get("b"));
+            assertArrayEquals(new int[] { 0, 2 }, store.getCore("a"));
+            assertNull(store.getCore("b"));
+            String report = store.report();
+            assertTrue(report.endsWith("1 verdicts loaded, 0 appended, 1 unsat cores loaded, 0 appended"), report);
+        }
+    }
+
+    private void write() throws IOException {
+        try (VerdictStore store = VerdictStore.open(dir, BUILD, Z3)) {
+            store.put("a", Status.UNSATISFIABLE);
+            store.put("b", Status.SATISFIABLE);
+            // unknown results depend on the limits of the solver and are not kept
+            store.put("c", Status.UNKNOWN);
+            store.putCore("a", new int[] { 0, 2 });
+            store.putCore("b", new int[0]);
+            assertEquals(Status.UNSATISFIABLE, store.get("a"));
+            String report = store.report();
+            assertTrue(report.endsWith("0 verdicts loaded, 0 appended, 0 unsat cores loaded, 0 appended"), report);
+        }
+    }
+
+    private Path log(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix)).findFirst().orElseThrow();
+        }
+    }
+
+    private static void truncate(Path file, int bytes) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - bytes));
+    }
+}